@@ -0,0 +1,59 @@
+package com.baiwang.imagezoom.benchmark;
+
+import com.baiwang.imagezoom.math.Affine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the transform work of one gesture frame: apply the zoom step to the support
+ * matrix, concat it with the base matrix and map the image bounds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AffineBenchmark {
+
+    private final Affine mBase = new Affine();
+    private final Affine mSupp = new Affine();
+    private final Affine mDisplay = new Affine();
+    private final float[] mRect = new float[4];
+    private float mScale = 1.01f;
+
+    @Setup
+    public void setUp() {
+        // a 4000x3000 image fit in a 1080x1920 view
+        mBase.postScale(0.27f, 0.27f);
+        mBase.postTranslate(0, 555);
+    }
+
+    @Benchmark
+    public float[] zoomFrame() {
+        // oscillate between zooming in and out so the values stay bounded
+        if (mSupp.getScaleX() > 4) mScale = 0.99f;
+        else if (mSupp.getScaleX() < 1) mScale = 1.01f;
+        mSupp.postScale(mScale, mScale, 540, 960);
+
+        mDisplay.set(mBase);
+        mDisplay.postConcat(mSupp);
+        mRect[0] = 0;
+        mRect[1] = 0;
+        mRect[2] = 4000;
+        mRect[3] = 3000;
+        mDisplay.mapRect(mRect);
+        return mRect;
+    }
+}
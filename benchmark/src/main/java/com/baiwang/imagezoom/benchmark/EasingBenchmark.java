@@ -0,0 +1,74 @@
+package com.baiwang.imagezoom.benchmark;
+
+import com.baiwang.imagezoom.easing.Easing;
+import com.baiwang.imagezoom.easing.TabulatedEasing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one easing evaluation, that is the per frame cost of an animated value,
+ * for every {@link Easing} implementation, direct and through a {@link TabulatedEasing}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EasingBenchmark {
+
+    private static final double DURATION = 300;
+
+    @Param({"Back", "Bounce", "Circ", "Cubic", "Elastic", "Expo", "Linear", "Quad", "Quart", "Quint", "Sine"})
+    public String easing;
+
+    @Param({"false", "true"})
+    public boolean tabulated;
+
+    private Easing mEasing;
+    private double mTime;
+
+    @Setup
+    public void setUp() throws Exception {
+        mEasing = (Easing) Class.forName(Easing.class.getPackage().getName() + "." + easing).newInstance();
+        if (tabulated) {
+            mEasing = new TabulatedEasing(mEasing);
+        }
+    }
+
+    /**
+     * Walk through the whole duration, as an animation does, so every branch is measured
+     */
+    private double nextTime() {
+        mTime += 16.6;
+        if (mTime > DURATION) mTime -= DURATION;
+        return mTime;
+    }
+
+    @Benchmark
+    public double easeIn() {
+        return mEasing.easeIn(nextTime(), 0, 1000, DURATION);
+    }
+
+    @Benchmark
+    public double easeOut() {
+        return mEasing.easeOut(nextTime(), 0, 1000, DURATION);
+    }
+
+    @Benchmark
+    public double easeInOut() {
+        return mEasing.easeInOut(nextTime(), 0, 1000, DURATION);
+    }
+}
@@ -0,0 +1,42 @@
+package com.baiwang.imagezoom.benchmark;
+
+import com.baiwang.imagezoom.animation.FlingPhysics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per frame cost of one fling axis, including the edge bounce.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlingBenchmark {
+
+    private static final float FRAME = 1 / 120f;
+
+    private final FlingPhysics mFling = new FlingPhysics();
+    private boolean mForward;
+
+    @Benchmark
+    public float step() {
+        if (!mFling.step(FRAME)) {
+            // alternate between the two edges so both bounces are measured
+            mForward = !mForward;
+            mFling.start(-1000, mForward ? 8000 : -8000, -2000, 0);
+        }
+        return mFling.getPosition();
+    }
+}
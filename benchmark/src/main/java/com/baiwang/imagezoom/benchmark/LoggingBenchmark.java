@@ -0,0 +1,96 @@
+package com.baiwang.imagezoom.benchmark;
+
+import com.baiwang.imagezoom.math.Affine;
+import com.baiwang.imagezoom.math.ZoomState;
+import com.baiwang.imagezoom.utils.GestureLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per gesture event cost of the logging: a pinch step on the zoom state going through the
+ * {@link GestureLog} call sites of the view, in the same order (scale lookups, postScale,
+ * target scale, centering), with the log disabled and enabled.<br />
+ * The messages are handed to a printer which only keeps their length: on a device the log
+ * write adds a system call per message on top. Released builds don't even pay the disabled
+ * case, the call sites are stripped by javac through {@code ZoomLog.ENABLED}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggingBenchmark {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private final ZoomState mState = new ZoomState();
+    private final float[] mDelta = new float[2];
+    private GestureLog mLog;
+    private int mPrinted;
+    private float mDirection = 1.02f;
+
+    @Setup
+    public void setup() {
+        mState.setFit(ZoomState.Fit.FIT_TO_SCREEN);
+        mState.setContentSize(4000, 3000);
+        mState.layout(VIEW_WIDTH, VIEW_HEIGHT, true, true, false, false);
+        mLog = new GestureLog("LoggingBenchmark", enabled, new GestureLog.Printer() {
+            @Override
+            public void println(int priority, String tag, String msg) {
+                mPrinted += msg.length();
+            }
+        });
+    }
+
+    private float getScale() {
+        final float scale = mState.getScale();
+        mLog.scale(scale);
+        return scale;
+    }
+
+    @Benchmark
+    public void scaleEvent(Blackhole blackhole) {
+        // ImageViewTouch.ScaleListener.onScale
+        final float scale = getScale();
+        if (scale > 6) mDirection = 0.98f;
+        else if (scale < 1.5f) mDirection = 1.02f;
+        final float target = Math.min(mState.getMaxScale(), Math.max(scale * mDirection, mState.getMinScale() - 0.1f));
+
+        // ImageViewTouchBase.postScale
+        final float delta = target / getScale();
+        mLog.postScale(delta, 400, 700);
+        mState.postScale(delta, 400, 700);
+        mLog.targetScale(target);
+
+        // ImageViewTouchBase.center
+        mState.getCenterDelta(mDelta);
+        if (mDelta[0] != 0 || mDelta[1] != 0) {
+            mLog.center();
+            mLog.postTranslate(mDelta[0], mDelta[1]);
+            mState.postTranslate(mDelta[0], mDelta[1]);
+        }
+
+        final Affine m = mState.getSupportMatrix();
+        mLog.matrix(m.getTranslateX(), m.getTranslateY(), m.getScaleX(), m.getScaleY());
+        blackhole.consume(mState.getDisplayMatrix());
+        blackhole.consume(mPrinted);
+    }
+}
@@ -0,0 +1,70 @@
+package com.baiwang.imagezoom.benchmark;
+
+import com.baiwang.imagezoom.math.ZoomMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the center, clamp and zoom limit calculations run at every scroll and zoom step.<br />
+ * The image bounds cycle through fitting, zoomed and scrolled past the edges, so
+ * every branch is taken.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZoomMathBenchmark {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    // left, top, right, bottom
+    private static final float[][] BOUNDS = {
+            {0, 656, 1080, 1264},
+            {-540, -200, 1620, 1016},
+            {120, -900, 3360, 2748},
+            {-3000, 300, -600, 1500},
+    };
+
+    private final float[] mOut = new float[2];
+    private int mIndex;
+
+    private float[] nextBounds() {
+        mIndex = (mIndex + 1) & 3;
+        return BOUNDS[mIndex];
+    }
+
+    @Benchmark
+    public float[] getCenter() {
+        float[] b = nextBounds();
+        ZoomMath.getCenter(b[0], b[1], b[2], b[3], VIEW_WIDTH, VIEW_HEIGHT, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public float[] clampScroll() {
+        float[] b = nextBounds();
+        mOut[0] = -35;
+        mOut[1] = 48;
+        ZoomMath.clampScroll(b[0], b[1], b[2], b[3], VIEW_WIDTH, VIEW_HEIGHT, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public float computeMaxZoom() {
+        float[] b = nextBounds();
+        return ZoomMath.computeMaxZoom((int) (b[2] - b[0]), (int) (b[3] - b[1]), VIEW_WIDTH, VIEW_HEIGHT);
+    }
+}
@@ -0,0 +1,9 @@
+# Rules applied to the apps using the library.
+
+# Strip the library debug logging from minified builds, see ZoomLog.
+# Only works with the optimizing configuration, proguard-android-optimize.txt.
+-assumenosideeffects class com.baiwang.imagezoom.utils.ZoomLog {
+    public static void v(...);
+    public static void d(...);
+    public static void i(...);
+}
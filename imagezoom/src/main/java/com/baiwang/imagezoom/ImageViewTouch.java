@@ -6,7 +6,6 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.GestureDetector;
 import android.view.GestureDetector.OnGestureListener;
 import android.view.GestureDetector.SimpleOnGestureListener;
@@ -16,21 +15,35 @@ import android.view.ScaleGestureDetector.OnScaleGestureListener;
 import android.view.ScaleGestureDetector.SimpleOnScaleGestureListener;
 import android.view.ViewConfiguration;
 
+import com.baiwang.imagezoom.utils.ZoomLog;
+
 public class ImageViewTouch extends ImageViewTouchBase {
     static final float SCROLL_DELTA_THRESHOLD = 1.0f;
     private Boolean IsDoubleModel;
-    protected int mDoubleTapDirection;
+    /**
+     * @deprecated mirror of {@link com.baiwang.imagezoom.math.ZoomState#getDoubleTapDirection()}: a value
+     * written by a subclass applies to the next double tap. Use the zoom state instead.
+     */
+    @Deprecated
+    protected int mDoubleTapDirection = 1;
     protected boolean mDoubleTapEnabled;
     private OnImageViewTouchDoubleTapListener mDoubleTapListener;
     protected GestureDetector mGestureDetector;
     protected OnGestureListener mGestureListener;
     protected ScaleGestureDetector mScaleDetector;
     protected boolean mScaleEnabled;
-    protected float mScaleFactor;
     protected OnScaleGestureListener mScaleListener;
     protected boolean mScrollEnabled;
+    protected boolean mPhysicsFlingEnabled;
     private OnImageViewTouchSingleTapListener mSingleTapListener;
     protected int mTouchSlop;
+    /**
+     * @deprecated mirror of {@link com.baiwang.imagezoom.math.ZoomState#getDoubleTapStep()}: a value
+     * written by a subclass applies to the next double tap. Use the zoom state instead.
+     */
+    @Deprecated
+    protected float mScaleFactor;
+    private final Rect mVisibleRect = new Rect();
 
     public class GestureListener extends SimpleOnGestureListener {
         public boolean onSingleTapConfirmed(MotionEvent motionEvent) {
@@ -41,12 +54,12 @@ public class ImageViewTouch extends ImageViewTouchBase {
         }
 
         public boolean onDoubleTap(MotionEvent motionEvent) {
-            String stringBuilder = "onDoubleTap. double tap enabled? " +
-                    ImageViewTouch.this.mDoubleTapEnabled;
-            Log.i(ImageViewTouchBase.LOG_TAG, stringBuilder);
+            if (LOG_ENABLED) {
+                ZoomLog.i(ImageViewTouchBase.LOG_TAG, "onDoubleTap. double tap enabled? " + ImageViewTouch.this.mDoubleTapEnabled);
+            }
             if (ImageViewTouch.this.mDoubleTapEnabled) {
                 ImageViewTouch.this.mUserScaled = true;
-                ImageViewTouch.this.zoomTo(Math.min(ImageViewTouch.this.getMaxScale(), Math.max(ImageViewTouch.this.onDoubleTapPost(ImageViewTouch.this.getScale(), ImageViewTouch.this.getMaxScale()), ImageViewTouch.this.getMinScale())), motionEvent.getX(), motionEvent.getY(), 200.0f);
+                ImageViewTouch.this.zoomTo(Math.min(ImageViewTouch.this.getMaxScale(), Math.max(ImageViewTouch.this.onDoubleTapPost(ImageViewTouch.this.getScale(), ImageViewTouch.this.getMaxScale()), ImageViewTouch.this.getMinScale())), motionEvent.getX(), motionEvent.getY(), AnimationType.ZOOM);
                 ImageViewTouch.this.invalidate();
             }
             if (ImageViewTouch.this.mDoubleTapListener != null) {
@@ -108,11 +121,17 @@ public class ImageViewTouch extends ImageViewTouchBase {
             if (mScaleDetector.isInProgress())
                 return false;
 
+            if (mPhysicsFlingEnabled) {
+                mUserScaled = true;
+                fling(velocityX, velocityY);
+                return super.onFling(e1, e2, velocityX, velocityY);
+            }
+
             float diffX = e2.getX() - e1.getX();
             float diffY = e2.getY() - e1.getY();
 
             if (Math.abs(velocityX) > 800 || Math.abs(velocityY) > 800) {
-                scrollBy(diffX / 2, diffY / 2, 300);
+                scrollBy(diffX / 2, diffY / 2, AnimationType.PAN);
                 invalidate();
             }
             return super.onFling(e1, e2, velocityX, velocityY);
@@ -149,10 +168,11 @@ public class ImageViewTouch extends ImageViewTouchBase {
                         currentSpan = ImageViewTouch.this.getMaxScale();
                     }
                     ImageViewTouch.this.postScale(currentSpan / ImageViewTouch.this.getScale(), scaleGestureDetector.getFocusX(), scaleGestureDetector.getFocusY());
-                    String stringBuilder = " targetScale " +
-                            currentSpan;
-                    Log.i("MyData", stringBuilder);
-                    ImageViewTouch.this.mDoubleTapDirection = 1;
+                    if (LOG_ENABLED) {
+                        GESTURE_LOG.targetScale(currentSpan);
+                    }
+                    ImageViewTouch.this.getZoomState().resetDoubleTap();
+                    ImageViewTouch.this.syncDoubleTapFields();
                     ImageViewTouch.this.invalidate();
                     return true;
                 } else if (!this.mScaled) {
@@ -189,6 +209,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
         this.mDoubleTapEnabled = true;
         this.mScaleEnabled = true;
         this.mScrollEnabled = true;
+        this.mPhysicsFlingEnabled = true;
         this.IsDoubleModel = Boolean.FALSE;
     }
 
@@ -201,6 +222,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
         this.mDoubleTapEnabled = true;
         this.mScaleEnabled = true;
         this.mScrollEnabled = true;
+        this.mPhysicsFlingEnabled = true;
         this.IsDoubleModel = Boolean.FALSE;
     }
 
@@ -211,7 +233,6 @@ public class ImageViewTouch extends ImageViewTouchBase {
         this.mScaleListener = getScaleListener();
         this.mScaleDetector = new ScaleGestureDetector(getContext(), this.mScaleListener);
         this.mGestureDetector = new GestureDetector(getContext(), this.mGestureListener, null, true);
-        this.mDoubleTapDirection = 1;
     }
 
     public void setDoubleTapListener(OnImageViewTouchDoubleTapListener onImageViewTouchDoubleTapListener) {
@@ -234,6 +255,16 @@ public class ImageViewTouch extends ImageViewTouchBase {
         this.mScrollEnabled = z;
     }
 
+    /**
+     * Fling with the release velocity, decelerating and bouncing at the image edges.
+     * When disabled a fling scrolls by half the gesture distance.
+     *
+     * @param z
+     */
+    public void setPhysicsFlingEnabled(boolean z) {
+        this.mPhysicsFlingEnabled = z;
+    }
+
     public boolean getDoubleTapEnabled() {
         return this.mDoubleTapEnabled;
     }
@@ -248,37 +279,51 @@ public class ImageViewTouch extends ImageViewTouchBase {
 
     protected void _setImageDrawable(Drawable drawable, Matrix matrix, float f, float f2) {
         super._setImageDrawable(drawable, matrix, f, f2);
-        this.mScaleFactor = getMaxScale() / 3.0f;
+        getZoomState().setDoubleTapStep(getMaxScale() / 3.0f);
+        syncDoubleTapFields();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void syncDoubleTapFields() {
+        this.mDoubleTapDirection = getZoomState().getDoubleTapDirection();
+        this.mScaleFactor = getZoomState().getDoubleTapStep();
     }
 
     public boolean onTouchEvent(MotionEvent motionEvent) {
-        this.mScaleDetector.onTouchEvent(motionEvent);
-        if (!this.mScaleDetector.isInProgress()) {
-            this.mGestureDetector.onTouchEvent(motionEvent);
-        }
-        if ((motionEvent.getAction() & 255) != 1) {
-            return true;
+        // one matrix commit per event, whatever the detectors do with it
+        beginInputEvent(motionEvent);
+        try {
+            if (motionEvent.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                stopFling();
+            }
+            this.mScaleDetector.onTouchEvent(motionEvent);
+            if (!this.mScaleDetector.isInProgress()) {
+                this.mGestureDetector.onTouchEvent(motionEvent);
+            }
+            if ((motionEvent.getAction() & 255) != 1) {
+                return true;
+            }
+            this.IsDoubleModel = Boolean.FALSE;
+            return onUp();
+        } finally {
+            endInputEvent();
         }
-        this.IsDoubleModel = Boolean.FALSE;
-        return onUp();
     }
 
     protected void onZoomAnimationCompleted(float f) {
         if (f < getMinScale()) {
-            zoomTo(getMinScale(), 50.0f);
+            zoomTo(getMinScale(), AnimationType.SNAP_BACK);
         }
     }
 
+    @SuppressWarnings("deprecation")
     protected float onDoubleTapPost(float f, float f2) {
-        if (this.mDoubleTapDirection != 1) {
-            this.mDoubleTapDirection = 1;
-            return SCROLL_DELTA_THRESHOLD;
-        } else if ((this.mScaleFactor * 2.0f) + f <= f2) {
-            return f + this.mScaleFactor;
-        } else {
-            this.mDoubleTapDirection = -1;
-            return f2;
-        }
+        // subclasses may have written the fields since the last sync
+        getZoomState().setDoubleTapStep(this.mScaleFactor);
+        getZoomState().setDoubleTapDirection(this.mDoubleTapDirection);
+        final float scale = getZoomState().nextDoubleTapScale(f, f2);
+        syncDoubleTapFields();
+        return scale;
     }
 
     public boolean onScroll(float f, float f2) {
@@ -290,7 +335,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
 
     public boolean onUp() {
         if (getScale() < getMinScale()) {
-            zoomTo(getMinScale(), 50.0f);
+            zoomTo(getMinScale(), AnimationType.SNAP_BACK);
         }
         return true;
     }
@@ -298,7 +343,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
     public boolean canScroll(int i) {
         RectF bitmapRect = getBitmapRect();
         updateRect(bitmapRect, this.mScrollRect);
-        Rect rect = new Rect();
+        Rect rect = mVisibleRect;
         getGlobalVisibleRect(rect);
         boolean z = false;
         if (bitmapRect == null) {
@@ -2,7 +2,9 @@ package com.baiwang.imagezoom;
 
 
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
@@ -11,15 +13,40 @@ import android.graphics.PaintFlagsDrawFilter;
 import android.graphics.PointF;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.Log;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+import android.view.WindowManager;
 import android.widget.ImageView;
 
+import com.baiwang.imagezoom.animation.AndroidFrameScheduler;
+import com.baiwang.imagezoom.animation.Animation;
+import com.baiwang.imagezoom.animation.AnimationEngine;
+import com.baiwang.imagezoom.animation.AnimationSpec;
+import com.baiwang.imagezoom.animation.FlingPhysics;
 import com.baiwang.imagezoom.easing.Cubic;
 import com.baiwang.imagezoom.easing.Easing;
+import com.baiwang.imagezoom.easing.TabulatedEasing;
 import com.baiwang.imagezoom.graphics.FastBitmapDrawable;
+import com.baiwang.imagezoom.graphics.TiledBitmapDrawable;
+import com.baiwang.imagezoom.loader.DecodeSpec;
+import com.baiwang.imagezoom.loader.ImageLoader;
+import com.baiwang.imagezoom.loader.ImageSource;
+import com.baiwang.imagezoom.math.Affine;
+import com.baiwang.imagezoom.math.ZoomMath;
+import com.baiwang.imagezoom.math.ZoomState;
+import com.baiwang.imagezoom.metrics.ViewMetrics;
+import com.baiwang.imagezoom.tiles.BitmapRegionDecoderAdapter;
+import com.baiwang.imagezoom.tiles.IRegionDecoder;
+import com.baiwang.imagezoom.utils.GestureLog;
 import com.baiwang.imagezoom.utils.IDisposable;
+import com.baiwang.imagezoom.utils.ZoomLog;
+
+import java.io.IOException;
+import java.util.EnumMap;
 
 /**
  * Base View to manage image zoom/scrool/pinch operations
@@ -55,6 +82,17 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         void onLayoutChanged(boolean changed, int left, int top, int right, int bottom);
     }
 
+    public interface OnImageLoadListener {
+        /**
+         * BS_Callback invoked when an image requested with
+         * {@link ImageViewTouchBase#setImageSource(ImageSource)} can't be decoded
+         *
+         * @param source
+         * @param error
+         */
+        void onImageLoadFailed(ImageSource source, Throwable error);
+    }
+
     /**
      * Use this to change the {@link ImageViewTouchBase#setDisplayType(DisplayType)} of
      * this View
@@ -78,11 +116,64 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         FILL_TO_SCREEN
     }
 
+    /**
+     * The kinds of animation which can be tuned with
+     * {@link ImageViewTouchBase#setAnimationSpec(AnimationType, AnimationSpec)}
+     */
+    public enum AnimationType {
+        /**
+         * Zoom requested by the user, e.g. double tap. Distance unit: zoom levels
+         */
+        ZOOM,
+        /**
+         * Animated scroll. Distance unit: pixels
+         */
+        PAN,
+        /**
+         * Zoom back to the min scale after the image has been pinched below it.
+         * Distance unit: zoom levels
+         */
+        SNAP_BACK
+    }
+
+    /**
+     * Bitmap filtering policy, see {@link ImageViewTouchBase#setDrawQuality(DrawQuality)}
+     */
+    public enum DrawQuality {
+        /**
+         * Always filter and anti-alias
+         */
+        HIGH,
+        /**
+         * Draw without filtering, anti-aliasing and dithering while a gesture or an
+         * animation moves the image, with full quality again the frame after it stops
+         */
+        ADAPTIVE
+    }
+
 
     static final String LOG_TAG = "ImageViewTouchBase";
-    static final boolean LOG_ENABLED = false;
+    static final boolean LOG_ENABLED = ZoomLog.ENABLED;
+    static final GestureLog GESTURE_LOG = new GestureLog(LOG_TAG, LOG_ENABLED, ZoomLog.PRINTER);
+
+    private static final float ZOOM_INVALID = ZoomState.ZOOM_INVALID;
+
+    /**
+     * Sample size of the preview decoded by {@link #setImageSourceProgressive(ImageSource)}
+     */
+    protected static final int PREVIEW_SAMPLE_SIZE = 8;
+
+    /**
+     * Default zoom, relative to fit-to-screen, up to which sampled decodes stay sharp
+     */
+    protected static final float DEFAULT_MAX_DECODE_ZOOM = 2f;
 
-    private static final float ZOOM_INVALID = -1f;
+    /**
+     * Default durations of the {@link AnimationType}s, in milliseconds
+     */
+    protected static final float DEFAULT_ZOOM_DURATION = 200f;
+    protected static final float DEFAULT_PAN_DURATION = 300f;
+    protected static final float DEFAULT_SNAP_BACK_DURATION = 50f;
 
     //add more attitude
     protected final PointF mStart = new PointF();
@@ -95,22 +186,36 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     protected float oldDist;
     protected float oldDegree;
 
-    private final Easing mEasing = new Cubic();
-    private final Matrix mBaseMatrix = new Matrix();
-    Matrix mSuppMatrix = new Matrix();
-    private Matrix mNextMatrix;
-    private final Handler mHandler = new Handler();
+    private final EnumMap<AnimationType, AnimationSpec> mAnimationSpecs = new EnumMap<>(AnimationType.class);
+    private final ZoomState mZoomState = new ZoomState();
+    private final AnimationEngine mAnimationEngine = new AnimationEngine(AndroidFrameScheduler.create());
+    private final PanAnimation mPanAnimation = new PanAnimation();
+    private final ZoomAnimation mZoomAnimation = new ZoomAnimation();
+    private final FlingAnimation mFlingAnimation = new FlingAnimation();
     private Runnable mLayoutRunnable = null;
+    private Drawable mPendingDrawable;
+    private IRegionDecoder<Bitmap> mPendingDecoder;
     protected boolean mUserScaled = false;
 
-    private float mMaxZoom = ZOOM_INVALID;
-    private float mMinZoom = ZOOM_INVALID;
-
-    // true when min and max zoom are explicitly defined
-    private boolean mMaxZoomDefined;
-    private boolean mMinZoomDefined;
-
+    // the display matrix as handed to the framework, the only android Matrix of the transform path
     private final Matrix mDisplayMatrix = new Matrix();
+    private final float[] mRectValues = new float[4];
+    private int mMatrixUpdateDepth;
+    private boolean mMatrixDirty;
+
+    // metrics state, see setMetrics
+    private ViewMetrics mMetrics;
+    private long mFrameIntervalNanos;
+    private long mLastFrameNanos;
+    private long mInputEventTime = -1;
+    private long mPendingInputTime = -1;
+
+    // draw quality state, see setDrawQuality
+    private DrawQuality mDrawQuality = DrawQuality.ADAPTIVE;
+    private int mInputAction = -1;
+    private boolean mGestureMoving;
+    private boolean mMotionFrameDrawn;
+    private boolean mMipmapEnabled = true;
     private final float[] mMatrixValues = new float[9];
 
     int mThisWidth = -1;
@@ -124,13 +229,48 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     final protected int DEFAULT_ANIMATION_DURATION = 200;
 
     private final RectF mBitmapRect = new RectF();
-    private final RectF mCenterRect = new RectF();
     protected final RectF mScrollRect = new RectF();
+    private final float[] mDelta = new float[2];
 
     private OnDrawableChangeListener mDrawableChangeListener;
     private OnLayoutChangeListener mOnLayoutChangeListener;
+    private OnImageLoadListener mOnImageLoadListener;
+
+    private ImageLoader mImageLoader;
+    private ImageLoader.Task mLoadTask;
+    private ImageLoader.Task mPreviewTask;
+    private Drawable mPreviewDrawable;
+
+    // sampled decode state, see setSampledDecodeEnabled. The source is also kept
+    // without sampled decode, to decode it again on memory pressure
+    private boolean mSampledDecodeEnabled;
+    private float mMaxDecodeZoom = DEFAULT_MAX_DECODE_ZOOM;
+    private ImageSource mSampledSource;
+    private int mSampledSourceWidth;
+    private int mSampledSourceHeight;
+    private int mSampledSampleSize;
+    // key of the image set with setImageSource, see onSaveInstanceState
+    private String mSourceKey;
+    private SavedState mPendingState;
+    private final float[] mFocus = new float[2];
+    // highest trim level received since the image was last restored, see onTrimMemory
+    private int mTrimLevel;
+
+    private final ComponentCallbacks2 mTrimMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            ImageViewTouchBase.this.onTrimMemory(level);
+        }
 
-    private float mEldScale;
+        @Override
+        public void onLowMemory() {
+            ImageViewTouchBase.this.onTrimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
 
     public ImageViewTouchBase(Context context) {
         this(context, null);
@@ -153,8 +293,124 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         mOnLayoutChangeListener = listener;
     }
 
+    public void setOnImageLoadListener(OnImageLoadListener listener) {
+        mOnImageLoadListener = listener;
+    }
+
+    /**
+     * Use a custom loader for {@link #setImageSource(ImageSource)}.
+     * Defaults to {@link ImageLoader#getInstance()}
+     */
+    public void setImageLoader(ImageLoader loader) {
+        mImageLoader = loader;
+    }
+
+    /**
+     * When enabled, images loaded with {@link #setImageSource(ImageSource)} are decoded only as big
+     * as this view can display them, up to the zoom set with {@link #setMaxDecodeZoom(float)}.
+     * The image is decoded again if the view size or the display type change.
+     *
+     * @param enabled
+     */
+    public void setSampledDecodeEnabled(boolean enabled) {
+        mSampledDecodeEnabled = enabled;
+    }
+
+    public boolean getSampledDecodeEnabled() {
+        return mSampledDecodeEnabled;
+    }
+
+    /**
+     * Set the zoom, relative to fit-to-screen, up to which sampled decodes must stay sharp.
+     * Zooming further upscales the decoded bitmap.
+     *
+     * @param zoom
+     */
+    public void setMaxDecodeZoom(float zoom) {
+        mMaxDecodeZoom = zoom;
+    }
+
+    public float getMaxDecodeZoom() {
+        return mMaxDecodeZoom;
+    }
+
+    /**
+     * Snapshot of the current view state used to size sampled decodes.
+     * Before the first layout the display size is used.
+     */
+    protected DecodeSpec createDecodeSpec() {
+        int width = mThisWidth;
+        int height = mThisHeight;
+        if (width <= 0 || height <= 0) {
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+        // trimmed: only as sharp as fit to screen needs, until zoomed in
+        final float maxDecodeZoom = mTrimLevel > 0 ? Math.min(1f, mMaxDecodeZoom) : mMaxDecodeZoom;
+        return new DecodeSpec(width, height, mZoomState.getFit(), mZoomState.getDefinedMaxScale(), maxDecodeZoom);
+    }
+
+    /**
+     * Record field metrics of this view in the given instance, null to stop.
+     * Off by default: when set, every draw is timed.
+     *
+     * @param metrics
+     */
+    public void setMetrics(ViewMetrics metrics) {
+        mMetrics = metrics;
+        mLastFrameNanos = 0;
+        mPendingInputTime = -1;
+        if (metrics != null && mFrameIntervalNanos == 0) {
+            mFrameIntervalNanos = computeFrameIntervalNanos();
+        }
+    }
+
+    public ViewMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private long computeFrameIntervalNanos() {
+        float refreshRate = 0;
+        WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager != null) {
+            refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        }
+        if (refreshRate < 1) refreshRate = 60;
+        return (long) (1000000000L / refreshRate);
+    }
+
+    public ImageLoader getImageLoader() {
+        if (mImageLoader == null) {
+            mImageLoader = ImageLoader.getInstance();
+        }
+        return mImageLoader;
+    }
+
     protected void init(Context context, AttributeSet attrs, int defStyle) {
         setScaleType(ScaleType.MATRIX);
+
+        // everything the animations change in a frame is committed once
+        mAnimationEngine.setFrameListener(new AnimationEngine.FrameListener() {
+            @Override
+            public void onBeginFrame(long frameTimeNanos) {
+                if (mMetrics != null) {
+                    mMetrics.recordAnimationFrame(mLastFrameNanos > 0 ? frameTimeNanos - mLastFrameNanos : 0, mFrameIntervalNanos);
+                }
+                mLastFrameNanos = frameTimeNanos;
+                beginMatrixUpdate();
+            }
+
+            @Override
+            public void onEndFrame() {
+                endMatrixUpdate();
+                if (!mAnimationEngine.isAnimating()) {
+                    // the next animation run starts a new frame sequence
+                    mLastFrameNanos = 0;
+                    onMotionStopped();
+                }
+            }
+        });
     }
 
     @Override
@@ -162,20 +418,83 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         if (scaleType == ScaleType.MATRIX) {
             super.setScaleType(scaleType);
         } else {
-            Log.w(LOG_TAG, "Unsupported scaletype. Only MATRIX can be used");
+            ZoomLog.w(LOG_TAG, "Unsupported scaletype. Only MATRIX can be used");
         }
     }
 
     public void resetDisplayMatrix() {
-        mSuppMatrix.reset();
+        mZoomState.getSupportMatrix().reset();
     }
 
     private final PaintFlagsDrawFilter paintFlagsDrawFilter = new PaintFlagsDrawFilter(0, Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final PaintFlagsDrawFilter mMotionDrawFilter = new PaintFlagsDrawFilter(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG, 0);
 
     @Override
     public void onDraw(Canvas canvas) {
-        canvas.setDrawFilter(paintFlagsDrawFilter);
+        mMotionFrameDrawn = mDrawQuality == DrawQuality.ADAPTIVE && isInMotion();
+        canvas.setDrawFilter(mMotionFrameDrawn ? mMotionDrawFilter : paintFlagsDrawFilter);
+
+        final ViewMetrics metrics = mMetrics;
+        if (metrics == null) {
+            super.onDraw(canvas);
+            return;
+        }
+
+        final long start = System.nanoTime();
         super.onDraw(canvas);
+        metrics.recordDraw(System.nanoTime() - start);
+
+        if (mPendingInputTime >= 0) {
+            metrics.recordInputLatency((SystemClock.uptimeMillis() - mPendingInputTime) * 1000000L);
+            mPendingInputTime = -1;
+        }
+    }
+
+    /**
+     * Set how bitmaps are filtered, {@link DrawQuality#ADAPTIVE} by default:
+     * cheaper sampling keeps gestures smooth on weak GPUs.
+     *
+     * @param quality
+     */
+    public void setDrawQuality(DrawQuality quality) {
+        mDrawQuality = quality;
+        invalidate();
+    }
+
+    public DrawQuality getDrawQuality() {
+        return mDrawQuality;
+    }
+
+    /**
+     * Draw bitmaps zoomed out below 1/2 from reduced versions, see
+     * {@link FastBitmapDrawable#setDrawScale(float)}. Enabled by default.
+     *
+     * @param enabled
+     */
+    public void setMipmapEnabled(boolean enabled) {
+        mMipmapEnabled = enabled;
+        updateDrawableViewport();
+        invalidate();
+    }
+
+    public boolean getMipmapEnabled() {
+        return mMipmapEnabled;
+    }
+
+    /**
+     * @return true while a gesture or an animation moves the image
+     */
+    public boolean isInMotion() {
+        return mGestureMoving || mAnimationEngine.isAnimating();
+    }
+
+    /**
+     * Redraw with full quality if the last frame was drawn in motion
+     */
+    private void onMotionStopped() {
+        if (mMotionFrameDrawn && !isInMotion()) {
+            invalidate();
+        }
     }
 
     /**
@@ -185,16 +504,76 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         setImageBitmap(null);
     }
 
+    /**
+     * Set the easing of every animation type, keeping their durations.
+     * Wrap expensive curves in a {@link TabulatedEasing}, and share the instance
+     * when many views animate at once.
+     *
+     * @param easing
+     */
+    public void setEasing(Easing easing) {
+        if (easing == null) easing = new Cubic();
+        for (AnimationType type : AnimationType.values()) {
+            mAnimationSpecs.put(type, getAnimationSpec(type).withEasing(easing));
+        }
+    }
+
+    /**
+     * @return the easing of the {@link AnimationType#ZOOM} animations
+     * @deprecated each animation type has its own easing, use {@link #getAnimationSpec(AnimationType)}
+     */
+    @Deprecated
+    public Easing getEasing() {
+        return getAnimationSpec(AnimationType.ZOOM).getEasing();
+    }
+
+    /**
+     * Set the easing and duration of one kind of animation, e.g. shorter
+     * animations on low end devices. Pass null to restore the default.
+     *
+     * @param type
+     * @param spec
+     */
+    public void setAnimationSpec(AnimationType type, AnimationSpec spec) {
+        if (spec == null) {
+            mAnimationSpecs.remove(type);
+        } else {
+            mAnimationSpecs.put(type, spec);
+        }
+    }
+
+    public AnimationSpec getAnimationSpec(AnimationType type) {
+        AnimationSpec spec = mAnimationSpecs.get(type);
+        if (spec == null) {
+            spec = getDefaultAnimationSpec(type);
+            mAnimationSpecs.put(type, spec);
+        }
+        return spec;
+    }
+
+    protected AnimationSpec getDefaultAnimationSpec(AnimationType type) {
+        switch (type) {
+            case PAN:
+                return new AnimationSpec(new Cubic(), DEFAULT_PAN_DURATION);
+            case SNAP_BACK:
+                return new AnimationSpec(new Cubic(), DEFAULT_SNAP_BACK_DURATION);
+            case ZOOM:
+            default:
+                return new AnimationSpec(new Cubic(), DEFAULT_ZOOM_DURATION);
+        }
+    }
+
     /**
      * Change the display type
      */
     public void setDisplayType(DisplayType type) {
         if (type != mScaleType) {
             if (LOG_ENABLED) {
-                Log.i(LOG_TAG, "setDisplayType: " + type);
+                ZoomLog.i(LOG_TAG, "setDisplayType: " + type);
             }
             mUserScaled = false;
             mScaleType = type;
+            mZoomState.setFit(toFit(type));
             mScaleTypeChanged = true;
             requestLayout();
         }
@@ -204,19 +583,40 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         return mScaleType;
     }
 
+    private static ZoomState.Fit toFit(DisplayType type) {
+        switch (type) {
+            case FIT_TO_SCREEN:
+                return ZoomState.Fit.FIT_TO_SCREEN;
+            case FIT_IF_BIGGER:
+                return ZoomState.Fit.FIT_IF_BIGGER;
+            case FILL_TO_SCREEN:
+                return ZoomState.Fit.FILL_TO_SCREEN;
+            case NONE:
+            default:
+                return ZoomState.Fit.NONE;
+        }
+    }
+
+    /**
+     * The zoom and pan state this view displays
+     */
+    public ZoomState getZoomState() {
+        return mZoomState;
+    }
+
     protected void setMinScale(float value) {
         if (LOG_ENABLED) {
-            Log.d(LOG_TAG, "setMinZoom: " + value);
+            ZoomLog.d(LOG_TAG, "setMinZoom: " + value);
         }
 
-        mMinZoom = value;
+        mZoomState.setMinScale(value);
     }
 
     protected void setMaxScale(float value) {
         if (LOG_ENABLED) {
-            Log.d(LOG_TAG, "setMaxZoom: " + value);
+            ZoomLog.d(LOG_TAG, "setMaxZoom: " + value);
         }
-        mMaxZoom = value;
+        mZoomState.setMaxScale(value);
     }
 
 
@@ -224,24 +624,17 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
 
         if (LOG_ENABLED) {
-            Log.e(LOG_TAG, "onLayout: " + changed + ", bitmapChanged: " + mBitmapChanged + ", scaleChanged: " + mScaleTypeChanged);
+            ZoomLog.e(LOG_TAG, "onLayout: " + changed + ", bitmapChanged: " + mBitmapChanged + ", scaleChanged: " + mScaleTypeChanged);
         }
 
         super.onLayout(changed, left, top, right, bottom);
 
-        int deltaX = 0;
-        int deltaY = 0;
+        final boolean resample = (changed || mScaleTypeChanged) && !mBitmapChanged;
 
         if (changed) {
-            int oldw = mThisWidth;
-            int oldh = mThisHeight;
-
             mThisWidth = right - left;
             mThisHeight = bottom - top;
 
-            deltaX = mThisWidth - oldw;
-            deltaY = mThisHeight - oldh;
-
             // update center point
             mCenter.x = mThisWidth / 2f;
             mCenter.y = mThisHeight / 2f;
@@ -258,89 +651,18 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
         if (drawable != null) {
 
-            if (changed || mScaleTypeChanged || mBitmapChanged) {
-
-                float scale = 1;
-
-                // retrieve the old values
-                float old_default_scale = getDefaultScale(mScaleType);
-                float old_matrix_scale = getScale(mBaseMatrix);
-                float old_scale = getScale();
-                float old_min_scale = Math.min(1f, 1f / old_matrix_scale);
-
-                getProperBaseMatrix(drawable, mBaseMatrix);
-
-                float new_matrix_scale = getScale(mBaseMatrix);
+            if (changed || mScaleTypeChanged || mBitmapChanged || mPendingState != null) {
 
                 if (LOG_ENABLED) {
-                    Log.d(LOG_TAG, "old matrix scale: " + old_matrix_scale);
-                    Log.d(LOG_TAG, "new matrix scale: " + new_matrix_scale);
-                    Log.d(LOG_TAG, "old min scale: " + old_min_scale);
-                    Log.d(LOG_TAG, "old scale: " + old_scale);
-                }
-
-                // 1. bitmap changed or scaletype changed
-                if (mBitmapChanged || mScaleTypeChanged) {
-
-                    if (LOG_ENABLED) {
-                        Log.d(LOG_TAG, "display type: " + mScaleType);
-                        Log.d(LOG_TAG, "newMatrix: " + mNextMatrix);
-                    }
-
-                    if (mNextMatrix != null) {
-                        mSuppMatrix.set(mNextMatrix);
-                        mNextMatrix = null;
-                        scale = getScale();
-                    } else {
-                        mSuppMatrix.reset();
-                        scale = getDefaultScale(mScaleType);
-                    }
-
-                    setImageMatrix(getImageViewMatrix());
-
-                    if (scale != getScale()) {
-                        zoomTo(scale);
-                    }
-
-                } else if (changed) {
-
-                    // 2. layout size changed
-
-                    if (!mMinZoomDefined) mMinZoom = ZOOM_INVALID;
-                    if (!mMaxZoomDefined) mMaxZoom = ZOOM_INVALID;
-
-                    setImageMatrix(getImageViewMatrix());
-                    postTranslate(-deltaX, -deltaY);
-
-
-                    if (!mUserScaled) {
-                        scale = getDefaultScale(mScaleType);
-                        zoomTo(scale);
-                    } else {
-                        if (Math.abs(old_scale - old_min_scale) > 0.001) {
-                            scale = (old_matrix_scale / new_matrix_scale) * old_scale;
-                        }
-                        zoomTo(scale);
-                    }
-
-                    if (LOG_ENABLED) {
-                        Log.d(LOG_TAG, "old min scale: " + old_default_scale);
-                        Log.d(LOG_TAG, "old scale: " + old_scale);
-                        Log.d(LOG_TAG, "new scale: " + scale);
-                    }
-
-
+                    ZoomLog.d(LOG_TAG, "display type: " + mScaleType + ", old scale: " + getScale());
                 }
 
+                mZoomState.layout(mThisWidth, mThisHeight, changed, mBitmapChanged, mScaleTypeChanged, mUserScaled);
                 mUserScaled = false;
+                if (mPendingState != null) applyPendingState();
 
-                if (scale > getMaxScale() || scale < getMinScale()) {
-                    // if current scale if outside the min/max bounds
-                    // then restore the correct scale
-                    zoomTo(scale);
-                }
-
-                center();
+                setImageMatrix(getImageViewMatrix());
+                updateDrawableViewport();
 
                 if (mBitmapChanged) onDrawableChanged(drawable);
                 if (changed || mBitmapChanged || mScaleTypeChanged)
@@ -350,10 +672,14 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
                 if (mBitmapChanged) mBitmapChanged = false;
 
                 if (LOG_ENABLED) {
-                    Log.d(LOG_TAG, "new scale: " + getScale());
+                    ZoomLog.d(LOG_TAG, "new scale: " + getScale());
                 }
             }
         } else {
+            if (changed) {
+                mZoomState.layout(mThisWidth, mThisHeight, true, false, false, false);
+            }
+
             // drawable is null
             if (mBitmapChanged) onDrawableChanged(drawable);
             if (changed || mBitmapChanged || mScaleTypeChanged)
@@ -364,7 +690,11 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
         }
 
-        this.printMatrix(this.mSuppMatrix);
+        if (resample) updateSampledResolution();
+
+        if (LOG_ENABLED) {
+            printMatrix(mZoomState.getSupportMatrix());
+        }
     }
 
     /**
@@ -377,44 +707,18 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
     protected void resetMatrix() {
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "resetMatrix");
+            ZoomLog.i(LOG_TAG, "resetMatrix");
         }
-        mSuppMatrix = new Matrix();
-
-        float scale = getDefaultScale(mScaleType);
+        mZoomState.reset();
         setImageMatrix(getImageViewMatrix());
 
         if (LOG_ENABLED) {
-            Log.d(LOG_TAG, "default scale: " + scale + ", scale: " + getScale());
-        }
-
-        if (scale != getScale()) {
-            zoomTo(scale);
+            ZoomLog.d(LOG_TAG, "default scale: " + mZoomState.getDefaultScale() + ", scale: " + getScale());
         }
 
         postInvalidate();
     }
 
-    private float getDefaultScale(DisplayType type) {
-        if (type == DisplayType.FIT_TO_SCREEN) {
-            // always fit to screen
-            return 1f;
-        } else if (type == DisplayType.FIT_IF_BIGGER) {
-            // normal scale if smaller, fit to screen otherwise
-            return Math.min(1f, 1f / getScale(mBaseMatrix));
-        } else if (type == DisplayType.FILL_TO_SCREEN) {
-            // normal scale if smaller, fit to screen otherwise
-            float scale = (float) getDrawable().getIntrinsicWidth() / getDrawable().getIntrinsicHeight();
-            if (scale < 1f)
-                scale = 1f / scale;
-
-            return scale;
-        } else {
-            // no scale
-            return 1f / getScale(mBaseMatrix);
-        }
-    }
-
     @Override
     public void setImageResource(int resId) {
         setImageDrawable(getContext().getResources().getDrawable(resId));
@@ -428,53 +732,388 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      */
     @Override
     public void setImageBitmap(Bitmap bitmap) {
+        cancelImageLoad();
+        mSourceKey = null;
         setImageBitmap(bitmap, null);
     }
 
 
+    /**
+     * Replace the current bitmap with another version of the same image, e.g. a higher
+     * resolution one, keeping the current zoom and pan: the base matrix is rescaled by the
+     * ratio between the old and the new intrinsic size so the image keeps the same on
+     * screen rectangle.
+     *
+     * @param bitmap the new bitmap
+     */
     public void setImageBitmapWithStatKeep(Bitmap bitmap) {
+        cancelImageLoad();
         if (bitmap == null) {
-            //super.setImageBitmap(null);
-            super.setImageDrawable(null);
+            setImageBitmap(null, null);
         } else {
-            Drawable d = new FastBitmapDrawable(bitmap);
-            super.setImageDrawable(d);
-            //Matrix current = getImageMatrix();
-            //super.setImageMatrix( current );
+            swapImageDrawable(new FastBitmapDrawable(bitmap));
+        }
+    }
+
+    /**
+     * @param drawable
+     * @see #setImageBitmapWithStatKeep(Bitmap)
+     */
+    private void swapImageDrawable(Drawable drawable) {
+        final Drawable oldDrawable = getDrawable();
+
+        if (oldDrawable == null || mBitmapChanged || mLayoutRunnable != null
+                || oldDrawable.getIntrinsicWidth() <= 0 || oldDrawable.getIntrinsicHeight() <= 0
+                || drawable.getIntrinsicWidth() <= 0 || drawable.getIntrinsicHeight() <= 0) {
+            // nothing on screen yet, there is no state to keep
+            setImageDrawable(drawable, null, ZOOM_INVALID, ZOOM_INVALID);
+            return;
+        }
+
+        if ((mScaleType == DisplayType.NONE || mScaleType == DisplayType.FIT_IF_BIGGER) && !mUserScaled
+                && Math.abs(getScale() - mZoomState.getDefaultScale()) < 0.001f) {
+            // the default display of these types depends on the intrinsic size: a preview laid out
+            // at its own size would leave the full image at 1/sample of it, below the min scale.
+            // Not zoomed yet, lay the new image out from scratch instead
+            setImageDrawable(drawable, null, ZOOM_INVALID, ZOOM_INVALID);
+            return;
         }
 
+        if (LOG_ENABLED) {
+            ZoomLog.i(LOG_TAG, "swapImageDrawable: " + oldDrawable.getIntrinsicWidth() + "x" + oldDrawable.getIntrinsicHeight()
+                    + " -> " + drawable.getIntrinsicWidth() + "x" + drawable.getIntrinsicHeight());
+        }
 
-//		boolean needUpdate = false;
-//		
-//		if ( matrix == null && !current.isIdentity() || matrix != null && !current.equals( matrix ) ) {
-//			needUpdate = true;
-//		}
-        //onImageMatrixChanged();
+        // zoom limits depend on the intrinsic size, they are recomputed
+        mZoomState.swapContentSize(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
 
-        //mBitmapChanged = true;
-        //requestLayout();
+        super.setImageDrawable(drawable);
+        if (oldDrawable instanceof IDisposable) {
+            ((IDisposable) oldDrawable).dispose();
+        }
+
+        setImageMatrix(getImageViewMatrix());
+        updateDrawableViewport();
+        onDrawableChanged(drawable);
     }
-//	public void setImageBitmap2(Bitmap bitmap){
-//		setImageBitmap( bitmap, this.getImageViewMatrix(), ZOOM_INVALID, ZOOM_INVALID );
-//		mBitmapChanged = true;
-//		requestLayout();
-//	}
 
     /**
      * @param bitmap
      * @param matrix
      * @see #setImageDrawable(Drawable, Matrix, float, float)
      */
-    private void setImageBitmap(final Bitmap bitmap, Matrix matrix) {
-        if (bitmap != null)
-            setImageDrawable(new FastBitmapDrawable(bitmap), matrix, ImageViewTouchBase.ZOOM_INVALID, ImageViewTouchBase.ZOOM_INVALID);
-        else
-            setImageDrawable(null, matrix, ImageViewTouchBase.ZOOM_INVALID, ImageViewTouchBase.ZOOM_INVALID);
+    private void setImageBitmap(final Bitmap bitmap, Matrix matrix) {
+        if (bitmap != null)
+            setImageDrawable(new FastBitmapDrawable(bitmap), matrix, ImageViewTouchBase.ZOOM_INVALID, ImageViewTouchBase.ZOOM_INVALID);
+        else
+            setImageDrawable(null, matrix, ImageViewTouchBase.ZOOM_INVALID, ImageViewTouchBase.ZOOM_INVALID);
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        cancelImageLoad();
+        mSourceKey = null;
+        setImageDrawable(drawable, null, ZOOM_INVALID, ZOOM_INVALID);
+    }
+
+    /**
+     * Decode the given image in background and display it once ready.<br />
+     * Any previous pending request is cancelled, as well as this one if another image
+     * is set or the view is disposed before the decode completes.
+     *
+     * @param source the image to load, null to clear the view
+     */
+    public void setImageSource(final ImageSource source) {
+        cancelImageLoad();
+        mSourceKey = source != null ? source.getKey() : null;
+        if (source == null) {
+            setImageDrawable(null, null, ZOOM_INVALID, ZOOM_INVALID);
+            return;
+        }
+        final ImageLoader.Callback callback = new ImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                final ImageLoader.Task task = mLoadTask;
+                mLoadTask = null;
+                onImageLoadCompleted(task);
+                onFullImageLoaded(bitmap);
+                onSampledImageLoaded(task, bitmap);
+            }
+
+            @Override
+            public void onImageLoadFailed(Throwable error) {
+                mLoadTask = null;
+                if (LOG_ENABLED) {
+                    ZoomLog.w(LOG_TAG, "failed to load " + source, error);
+                }
+                if (null != mOnImageLoadListener) {
+                    mOnImageLoadListener.onImageLoadFailed(source, error);
+                }
+            }
+        };
+
+        if (mSampledDecodeEnabled) {
+            mLoadTask = getImageLoader().load(source, createDecodeSpec(), callback);
+        } else {
+            mLoadTask = getImageLoader().load(source, callback);
+        }
+    }
+
+    /**
+     * Display the given preview right away, then decode the full image in background
+     * and swap it in without changing the current zoom and pan.
+     *
+     * @param source  the full resolution image
+     * @param preview a low resolution version of the same image, e.g. a thumbnail
+     * @see #setImageBitmapWithStatKeep(Bitmap)
+     */
+    public void setImageSource(final ImageSource source, Bitmap preview) {
+        setImageSource(source);
+        if (preview != null && mLoadTask != null) {
+            mPreviewDrawable = new FastBitmapDrawable(preview);
+            setImageDrawable(mPreviewDrawable, null, ZOOM_INVALID, ZOOM_INVALID);
+        }
+    }
+
+    /**
+     * Same as {@link #setImageSource(ImageSource, Bitmap)}, but the preview is decoded
+     * from the source itself using {@link #PREVIEW_SAMPLE_SIZE}
+     *
+     * @param source the image to load
+     */
+    public void setImageSourceProgressive(final ImageSource source) {
+        setImageSource(source);
+        if (mLoadTask == null) return;
+
+        mPreviewTask = getImageLoader().load(source, PREVIEW_SAMPLE_SIZE, new ImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                // not recorded in the metrics: one image, one load, the full resolution one
+                mPreviewTask = null;
+                mPreviewDrawable = new FastBitmapDrawable(bitmap, getImageLoader());
+                setImageDrawable(mPreviewDrawable, null, ZOOM_INVALID, ZOOM_INVALID);
+            }
+
+            @Override
+            public void onImageLoadFailed(Throwable error) {
+                // the full resolution request reports the failure
+                mPreviewTask = null;
+            }
+        });
+    }
+
+    /**
+     * Decode the given image in background into the memory cache of the loader, sized as this view
+     * would display it: a later {@link #setImageSource(ImageSource)} of the image, in this view or
+     * in another one of the same size, is then a cache hit. E.g. the next page of a gallery.
+     *
+     * @param source the image to prefetch
+     * @return the task, to cancel the prefetch, null if the loader has no memory cache
+     */
+    public ImageLoader.Task prefetchImageSource(ImageSource source) {
+        final ImageLoader loader = getImageLoader();
+        if (source == null || loader.getMemoryCache() == null) return null;
+
+        final ImageLoader.Callback callback = new ImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                // unreferenced, the bitmap stays in the cache until evicted
+                loader.releaseBitmap(bitmap);
+            }
+
+            @Override
+            public void onImageLoadFailed(Throwable error) {
+                // the actual load reports it
+            }
+        };
+        if (mSampledDecodeEnabled) {
+            return loader.load(source, createDecodeSpec(), callback);
+        }
+        return loader.load(source, callback);
+    }
+
+    private void onImageLoadCompleted(ImageLoader.Task task) {
+        if (mMetrics != null && task != null) {
+            mMetrics.recordImageLoaded(task.getLoadedFrom(), task.getDecodeTimeNanos());
+        }
+    }
+
+    /**
+     * Display the result of a full resolution load
+     */
+    private void onFullImageLoaded(Bitmap bitmap) {
+        if (mPreviewTask != null) {
+            mPreviewTask.cancel();
+            mPreviewTask = null;
+        }
+        final Drawable preview = mPreviewDrawable;
+        mPreviewDrawable = null;
+
+        final Drawable drawable = new FastBitmapDrawable(bitmap, getImageLoader());
+        if (preview != null && preview == getDrawable()) {
+            swapImageDrawable(drawable);
+        } else {
+            setImageDrawable(drawable, null, ZOOM_INVALID, ZOOM_INVALID);
+        }
+    }
+
+    /**
+     * Remember how the current image has been sampled, and decode it again
+     * right away if the view changed in the meantime
+     */
+    private void onSampledImageLoaded(ImageLoader.Task task, Bitmap bitmap) {
+        if (task == null) return;
+        mSampledSource = task.getSource();
+        mSampledSampleSize = task.getSampleSize();
+        if (task.getDecodeSpec() != null) {
+            mSampledSourceWidth = task.getSourceWidth();
+            mSampledSourceHeight = task.getSourceHeight();
+        } else {
+            // decoded at full size
+            mSampledSourceWidth = bitmap.getWidth();
+            mSampledSourceHeight = bitmap.getHeight();
+        }
+
+        if (mThisWidth > 0 && mThisHeight > 0) {
+            updateSampledResolution();
+        }
+    }
+
+    /**
+     * Decode the current sampled image again if the view size or the display type
+     * now call for a different sample size. The zoom and pan are preserved.<br />
+     * Without sampled decode, the image is only sampled while trimmed, see {@link #onTrimMemory(int)}.
+     */
+    private void updateSampledResolution() {
+        if (mSampledSource == null || mLoadTask != null) return;
+
+        final DecodeSpec spec = mSampledDecodeEnabled || mTrimLevel > 0 ? createDecodeSpec() : null;
+        final int sampleSize = spec != null ? spec.getSampleSize(mSampledSourceWidth, mSampledSourceHeight) : 1;
+        if (sampleSize == mSampledSampleSize) return;
+
+        if (LOG_ENABLED) {
+            ZoomLog.i(LOG_TAG, "updateSampledResolution: " + mSampledSource + ", sample size: " + sampleSize);
+        }
+
+        final ImageLoader.Callback callback = new ImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                final ImageLoader.Task task = mLoadTask;
+                mLoadTask = null;
+                onImageLoadCompleted(task);
+                swapImageDrawable(new FastBitmapDrawable(bitmap, getImageLoader()));
+                mSampledSampleSize = task.getSampleSize();
+                if (mTrimLevel > 0) {
+                    // the replaced bitmap is unreferenced now, trim it away too
+                    getImageLoader().onTrimMemory(mTrimLevel);
+                } else {
+                    // restored meanwhile
+                    updateSampledResolution();
+                }
+            }
+
+            @Override
+            public void onImageLoadFailed(Throwable error) {
+                // keep the current bitmap
+                mLoadTask = null;
+            }
+        };
+        if (spec != null) {
+            mLoadTask = getImageLoader().load(mSampledSource, spec, callback);
+        } else {
+            mLoadTask = getImageLoader().load(mSampledSource, callback);
+        }
+    }
+
+    /**
+     * Respond to memory pressure, see {@link ComponentCallbacks2#onTrimMemory(int)}. Invoked
+     * while this view is attached to a window, the event is then forwarded to the loader.<br />
+     * Once the UI is hidden, the decoded tiles are dropped and an image set with
+     * {@link #setImageSource(ImageSource)}, sampled or not, is decoded again at the resolution
+     * fit to screen needs: the full quality comes back as soon as the image is zoomed in.
+     * Setting another image clears the trimmed state.
+     *
+     * @param level
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            final Drawable drawable = getDrawable();
+            if (drawable instanceof TiledBitmapDrawable) {
+                ((TiledBitmapDrawable) drawable).trimMemory();
+            }
+            final boolean trimmed = mTrimLevel > 0;
+            mTrimLevel = Math.max(mTrimLevel, level);
+            if (!trimmed) {
+                updateSampledResolution();
+            }
+        }
+        getImageLoader().onTrimMemory(level);
+    }
+
+    /**
+     * Decode the image at full quality again after {@link #onTrimMemory(int)},
+     * if the current zoom needs it
+     */
+    private void restoreTrimmedImage() {
+        if (mTrimLevel > 0 && getScale() > 1f) {
+            if (LOG_ENABLED) {
+                ZoomLog.i(LOG_TAG, "restoreTrimmedImage, scale: " + getScale());
+            }
+            mTrimLevel = 0;
+            updateSampledResolution();
+        }
+    }
+
+    /**
+     * Cancel the pending {@link #setImageSource(ImageSource)} request, if any
+     */
+    public void cancelImageLoad() {
+        if (mLoadTask != null) {
+            mLoadTask.cancel();
+            mLoadTask = null;
+        }
+        if (mPreviewTask != null) {
+            mPreviewTask.cancel();
+            mPreviewTask = null;
+        }
+        mPreviewDrawable = null;
+        mSampledSource = null;
+        // the next image starts untrimmed, its loads and prefetches at full quality
+        mTrimLevel = 0;
+    }
+
+    /**
+     * Display a huge image using tiles: only the visible part of the image is decoded,
+     * at the sample size required by the current scale.
+     *
+     * @param pathName the image file
+     * @throws IOException if the image format is not supported or the file can't be read
+     * @see #setImageRegionDecoder(IRegionDecoder)
+     */
+    public void setImageTiled(String pathName) throws IOException {
+        setImageRegionDecoder(BitmapRegionDecoderAdapter.newInstance(pathName));
     }
 
-    @Override
-    public void setImageDrawable(Drawable drawable) {
-        setImageDrawable(drawable, null, ZOOM_INVALID, ZOOM_INVALID);
+    /**
+     * Display a huge image using tiles decoded by the given decoder.
+     * The decoder is released once the image is replaced or the view is disposed.
+     *
+     * @param decoder the region decoder
+     */
+    public void setImageRegionDecoder(final IRegionDecoder<Bitmap> decoder) {
+        cancelImageLoad();
+        mSourceKey = null;
+        if (getWidth() <= 0) {
+            if (mPendingDecoder == decoder) mPendingDecoder = null;
+            disposePendingDrawable(null);
+            mPendingDecoder = decoder;
+            mLayoutRunnable = () -> {
+                mPendingDecoder = null;
+                setImageRegionDecoder(decoder);
+            };
+            return;
+        }
+        setImageDrawable(new TiledBitmapDrawable(decoder, mThisWidth, mThisHeight), null, ZOOM_INVALID, ZOOM_INVALID);
     }
 
     /**
@@ -489,32 +1128,63 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
         final int viewWidth = getWidth();
 
+        disposePendingDrawable(drawable);
+
         if (viewWidth <= 0) {
+            mPendingDrawable = drawable;
             mLayoutRunnable = () -> setImageDrawable(drawable, initial_matrix, min_zoom, max_zoom);
             return;
         }
         _setImageDrawable(drawable, initial_matrix, min_zoom, max_zoom);
     }
 
+    /**
+     * Dispose the drawable or the region decoder waiting for the first layout, if any,
+     * unless it is the given drawable
+     */
+    private void disposePendingDrawable(Drawable keep) {
+        final Drawable pending = mPendingDrawable;
+        mPendingDrawable = null;
+        if (pending != null && pending != keep && pending instanceof IDisposable) {
+            ((IDisposable) pending).dispose();
+        }
+        final IRegionDecoder<Bitmap> decoder = mPendingDecoder;
+        mPendingDecoder = null;
+        if (decoder != null) {
+            decoder.recycle();
+        }
+    }
+
     protected void _setImageDrawable(final Drawable drawable, final Matrix initial_matrix, float min_zoom, float max_zoom) {
 
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "_setImageDrawable");
+            ZoomLog.i(LOG_TAG, "_setImageDrawable");
         }
 
+        final Drawable oldDrawable = getDrawable();
+
         if (drawable != null) {
 
             if (LOG_ENABLED) {
-                Log.d(LOG_TAG, "size: " + drawable.getIntrinsicWidth() + "x" + drawable.getIntrinsicHeight());
+                ZoomLog.d(LOG_TAG, "size: " + drawable.getIntrinsicWidth() + "x" + drawable.getIntrinsicHeight());
             }
+            mZoomState.setContentSize(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
             super.setImageDrawable(drawable);
         } else {
-            mBaseMatrix.reset();
+            mZoomState.clearContent();
             super.setImageDrawable(null);
         }
 
+        // the old drawable is released only once detached, its bitmap may be reused right away
+        if (oldDrawable != drawable && oldDrawable instanceof IDisposable) {
+            ((IDisposable) oldDrawable).dispose();
+        }
+
         if (initial_matrix != null) {
-            mNextMatrix = new Matrix(initial_matrix);
+            Affine next = new Affine();
+            initial_matrix.getValues(mMatrixValues);
+            next.setValues(mMatrixValues);
+            mZoomState.setNextSupportMatrix(next);
         }
 
         mBitmapChanged = true;
@@ -528,7 +1198,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      */
     private void onDrawableChanged(final Drawable drawable) {
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "onDrawableChanged");
+            ZoomLog.i(LOG_TAG, "onDrawableChanged");
         }
         fireOnDrawableChangeListener(drawable);
     }
@@ -557,57 +1227,18 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      */
     protected void onLayoutChanged(int left, int top, int right, int bottom) {
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "onLayoutChanged");
+            ZoomLog.i(LOG_TAG, "onLayoutChanged");
         }
         fireOnLayoutChangeListener(left, top, right, bottom);
     }
 
-    private float computeMaxZoom() {
-        final Drawable drawable = getDrawable();
-
-        if (drawable == null) {
-            return 1F;
-        }
-
-        float fw = (float) drawable.getIntrinsicWidth() / (float) mThisWidth;
-        float fh = (float) drawable.getIntrinsicHeight() / (float) mThisHeight;
-        float scale = Math.max(fw, fh) * 8;
-
-        if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "computeMaxZoom: " + scale);
-        }
-        return scale;
-    }
-
-    private float computeMinZoom() {
-        final Drawable drawable = getDrawable();
-
-        if (drawable == null) {
-            return 1F;
-        }
-
-        float scale = getScale(mBaseMatrix);
-        scale = Math.min(1f, 1f / scale);
-
-        if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "computeMinZoom: " + scale);
-        }
-
-        return scale;
-    }
-
     /**
      * Returns the current maximum allowed image scale
      *
      * @return
      */
     protected float getMaxScale() {
-        if (mMaxZoom == ZOOM_INVALID) {
-            mMaxZoom = computeMaxZoom();
-        }
-
-
-        return mMaxZoom;
+        return mZoomState.getMaxScale();
     }
 
     /**
@@ -616,10 +1247,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @return
      */
     protected float getMinScale() {
-        if (mMinZoom == ZOOM_INVALID) {
-            mMinZoom = computeMinZoom();
-        }
-        return mMinZoom;
+        return mZoomState.getMinScale();
     }
 
     /**
@@ -628,12 +1256,8 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @return
      */
     public Matrix getImageViewMatrix() {
-        return getImageViewMatrix(mSuppMatrix);
-    }
-
-    private Matrix getImageViewMatrix(Matrix supportMatrix) {
-        mDisplayMatrix.set(mBaseMatrix);
-        mDisplayMatrix.postConcat(supportMatrix);
+        mZoomState.getDisplayMatrix().getValues(mMatrixValues);
+        mDisplayMatrix.setValues(mMatrixValues);
         return mDisplayMatrix;
     }
 
@@ -658,6 +1282,30 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @see {@link #setImageMatrix(Matrix)}
      */
     private void onImageMatrixChanged() {
+        updateDrawableViewport();
+        restoreTrimmedImage();
+
+        // the gesture moves the image until the pointers are up
+        if (mInputAction == MotionEvent.ACTION_MOVE) {
+            mGestureMoving = true;
+        }
+
+        // the oldest input not drawn yet sets the latency
+        if (mInputEventTime >= 0 && mPendingInputTime < 0 && mMetrics != null) {
+            mPendingInputTime = mInputEventTime;
+        }
+    }
+
+    /**
+     * Report the visible area to a tiled drawable, or the draw scale to a bitmap drawable
+     */
+    private void updateDrawableViewport() {
+        final Drawable drawable = getDrawable();
+        if (drawable instanceof TiledBitmapDrawable) {
+            ((TiledBitmapDrawable) drawable).setViewport(getImageMatrix(), mThisWidth, mThisHeight);
+        } else if (drawable instanceof FastBitmapDrawable) {
+            ((FastBitmapDrawable) drawable).setDrawScale(mMipmapEnabled ? mZoomState.getDisplayMatrix().mapRadius(1f) : 1f);
+        }
     }
 
     /**
@@ -674,52 +1322,10 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @return the current support matrix
      */
     public Matrix getDisplayMatrix() {
-        return new Matrix(mSuppMatrix);
-    }
-
-    /**
-     * Setup the base matrix so that the image is centered and scaled properly.
-     *
-     * @param drawable
-     * @param matrix
-     */
-    private void getProperBaseMatrix(Drawable drawable, Matrix matrix) {
-        float viewWidth = mThisWidth;
-        float viewHeight = mThisHeight;
-
-        if (LOG_ENABLED) {
-            Log.d(LOG_TAG, "getProperBaseMatrix. view: " + viewWidth + "x" + viewHeight);
-        }
-
-        float w = drawable.getIntrinsicWidth();
-        float h = drawable.getIntrinsicHeight();
-        float widthScale, heightScale;
-        matrix.reset();
-
-        if (w > viewWidth || h > viewHeight) {
-            widthScale = viewWidth / w;
-            heightScale = viewHeight / h;
-            float scale = Math.min(widthScale, heightScale);
-            matrix.postScale(scale, scale);
-
-            float tw = (viewWidth - w * scale) / 2.0f;
-            float th = (viewHeight - h * scale) / 2.0f;
-            matrix.postTranslate(tw, th);
-
-        } else {
-            widthScale = viewWidth / w;
-            heightScale = viewHeight / h;
-            float scale = Math.min(widthScale, heightScale);
-            matrix.postScale(scale, scale);
-
-            float tw = (viewWidth - w * scale) / 2.0f;
-            float th = (viewHeight - h * scale) / 2.0f;
-            matrix.postTranslate(tw, th);
-        }
-
-        if (LOG_ENABLED) {
-            printMatrix(matrix);
-        }
+        Matrix matrix = new Matrix();
+        mZoomState.getSupportMatrix().getValues(mMatrixValues);
+        matrix.setValues(mMatrixValues);
+        return matrix;
     }
 
     /**
@@ -747,37 +1353,21 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         matrix.postTranslate((viewWidth - w * scale) / 2.0f, (viewHeight - h * scale) / 2.0f);
     }
 
-    private float getValue(Matrix matrix, int whichValue) {
-        matrix.getValues(mMatrixValues);
-        return mMatrixValues[whichValue];
-    }
-
-    void printMatrix(Matrix matrix) {
-        float scalex = getValue(matrix, Matrix.MSCALE_X);
-        float scaley = getValue(matrix, Matrix.MSCALE_Y);
-        float tx = getValue(matrix, Matrix.MTRANS_X);
-        float ty = getValue(matrix, Matrix.MTRANS_Y);
-        Log.d(LOG_TAG, "matrix: { x: " + tx + ", y: " + ty + ", scalex: " + scalex + ", scaley: " + scaley + " }");
+    void printMatrix(Affine matrix) {
+        float scalex = matrix.getScaleX();
+        float scaley = matrix.getScaleY();
+        float tx = matrix.getTranslateX();
+        float ty = matrix.getTranslateY();
+        GESTURE_LOG.matrix(tx, ty, scalex, scaley);
     }
 
     public RectF getBitmapRect() {
-        return getBitmapRect(mSuppMatrix);
-    }
-
-    private RectF getBitmapRect(Matrix supportMatrix) {
-        final Drawable drawable = getDrawable();
-
-        if (drawable == null) return null;
-        Matrix m = getImageViewMatrix(supportMatrix);
-        mBitmapRect.set(0, 0, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
-        m.mapRect(mBitmapRect);
+        final float[] rect = mRectValues;
+        if (!mZoomState.getContentRect(rect)) return null;
+        mBitmapRect.set(rect[0], rect[1], rect[2], rect[3]);
         return mBitmapRect;
     }
 
-    private float getScale(Matrix matrix) {
-        return getValue(matrix, Matrix.MSCALE_X);
-    }
-
     @SuppressLint("Override")
     public float getRotation() {
         return 0;
@@ -789,77 +1379,96 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @return
      */
     public float getScale() {
-        float scale = getScale(mSuppMatrix);
-        if (scale != 0) {
-            mEldScale = scale;
-        }
-
-        Log.v(LOG_TAG, String.valueOf(mEldScale));
-        return mEldScale;
+        float scale = mZoomState.getScale();
 
-        //return getScale( mSuppMatrix );
+        if (LOG_ENABLED) {
+            GESTURE_LOG.scale(scale);
+        }
+        return scale;
     }
 
     public float getBaseScale() {
-        return getScale(mBaseMatrix);
+        return mZoomState.getBaseScale();
     }
 
     private void center() {
-        final Drawable drawable = getDrawable();
-        if (drawable == null) return;
+        mZoomState.getCenterDelta(mDelta);
 
-        RectF rect = getCenter(mSuppMatrix);
-
-        if (rect.left != 0 || rect.top != 0) {
+        if (mDelta[0] != 0 || mDelta[1] != 0) {
 
             if (LOG_ENABLED) {
-                Log.i(LOG_TAG, "center");
+                GESTURE_LOG.center();
             }
-            postTranslate(rect.left, rect.top);
+            postTranslate(mDelta[0], mDelta[1]);
         }
     }
 
-    private RectF getCenter(Matrix supportMatrix) {
-        final Drawable drawable = getDrawable();
+    /**
+     * Start a matrix transaction: until the matching {@link #endMatrixUpdate()} the
+     * translate, scale and rotate operations only change the support matrix, and the
+     * resulting display matrix is pushed to the view once, at the end.<br />
+     * Touch events and animation frames run in a transaction, so each gesture frame
+     * concatenates the matrices and invalidates once. Transactions can be nested.
+     */
+    public void beginMatrixUpdate() {
+        mMatrixUpdateDepth++;
+    }
 
-        if (drawable == null) return new RectF(0, 0, 0, 0);
-
-        mCenterRect.set(0, 0, 0, 0);
-        RectF rect = getBitmapRect(supportMatrix);
-        float height = rect.height();
-        float width = rect.width();
-        float deltaX = 0, deltaY = 0;
-        if (true) {
-            int viewHeight = mThisHeight;
-            if (height < viewHeight) {
-                deltaY = (viewHeight - height) / 2 - rect.top;
-            } else if (rect.top > 0) {
-                deltaY = -rect.top;
-            } else if (rect.bottom < viewHeight) {
-                deltaY = mThisHeight - rect.bottom;
-            }
+    /**
+     * End a transaction started with {@link #beginMatrixUpdate()}, committing the
+     * accumulated changes when the outermost transaction ends
+     */
+    public void endMatrixUpdate() {
+        if (mMatrixUpdateDepth == 0) return;
+        if (--mMatrixUpdateDepth == 0 && mMatrixDirty) {
+            mMatrixDirty = false;
+            setImageMatrix(getImageViewMatrix());
         }
-        if (true) {
-            int viewWidth = mThisWidth;
-            if (width < viewWidth) {
-                deltaX = (viewWidth - width) / 2 - rect.left;
-            } else if (rect.left > 0) {
-                deltaX = -rect.left;
-            } else if (rect.right < viewWidth) {
-                deltaX = viewWidth - rect.right;
-            }
+    }
+
+    /**
+     * Start handling a touch event: a matrix transaction, see {@link #beginMatrixUpdate()},
+     * whose changes are attributed to the event by the input latency metrics, and which
+     * puts the view in motion for the {@link DrawQuality#ADAPTIVE} draw quality
+     *
+     * @param event
+     */
+    protected void beginInputEvent(MotionEvent event) {
+        mInputEventTime = event.getEventTime();
+        mInputAction = event.getActionMasked();
+        beginMatrixUpdate();
+    }
+
+    protected void endInputEvent() {
+        endMatrixUpdate();
+        mInputEventTime = -1;
+
+        final int action = mInputAction;
+        mInputAction = -1;
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mGestureMoving = false;
+            onMotionStopped();
+        }
+    }
+
+    /**
+     * Push the support matrix to the view, or defer it to the end of the running transaction
+     */
+    private void updateImageMatrix() {
+        if (mMatrixUpdateDepth > 0) {
+            mMatrixDirty = true;
+        } else {
+            setImageMatrix(getImageViewMatrix());
         }
-        mCenterRect.set(deltaX, deltaY, 0, 0);
-        return mCenterRect;
     }
 
     protected void postTranslate(float deltaX, float deltaY) {
         if (deltaX != 0 || deltaY != 0) {
             if (LOG_ENABLED) {
-                Log.i(LOG_TAG, "postTranslate: " + deltaX + "x" + deltaY);
+                GESTURE_LOG.postTranslate(deltaX, deltaY);
             }
-            mSuppMatrix.postTranslate(deltaX, deltaY);
-            setImageMatrix(getImageViewMatrix());
+            mZoomState.postTranslate(deltaX, deltaY);
+            updateImageMatrix();
         }
 
 
@@ -867,46 +1476,50 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
     protected void postScale(float scale, float centerX, float centerY) {
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "postScale: " + scale + ", center: " + centerX + "x" + centerY);
+            GESTURE_LOG.postScale(scale, centerX, centerY);
         }
-        mSuppMatrix.postScale(scale, scale, centerX, centerY);
-        setImageMatrix(getImageViewMatrix());
+        mZoomState.postScale(scale, centerX, centerY);
+        updateImageMatrix();
     }
 
     public void postScale(float scale) {
-        mSuppMatrix.postScale(scale, scale, this.getWidth() / 2, this.getHeight() / 2);
-        setImageMatrix(getImageViewMatrix());
+        mZoomState.postScale(scale, this.getWidth() / 2, this.getHeight() / 2);
+        updateImageMatrix();
     }
 
     //add rotation
     protected void postRotation(float rotation, float width, float height) {
-        mSuppMatrix.postRotate(rotation, width, height);
-        setImageMatrix(getImageViewMatrix());
+        mZoomState.postRotate(rotation, width, height);
+        updateImageMatrix();
     }
 
     public void postRotation(float rotation) {
-        mEldScale = this.getScale();
-        mSuppMatrix.postRotate(rotation, this.getWidth() / 2, this.getHeight() / 2);
-        setImageMatrix(getImageViewMatrix());
+        mZoomState.postRotate(rotation, this.getWidth() / 2, this.getHeight() / 2);
+        updateImageMatrix();
     }
 
     //add radius
     public void postRoundRadius(float xRadius, float yRadius) {
-        FastBitmapDrawable fbd = (FastBitmapDrawable) this.getDrawable();
-        fbd.setRoundRadius(xRadius, yRadius);
+        final Drawable drawable = this.getDrawable();
+        // tiled images have no round corners
+        if (!(drawable instanceof FastBitmapDrawable)) return;
+        ((FastBitmapDrawable) drawable).setRoundRadius(xRadius, yRadius);
         invalidate();
     }
 
     public void Reversal(float rotation) {
-        mEldScale = this.getScale();
-        mSuppMatrix.postScale(1, -1, this.getWidth() / 2, this.getHeight() / 2);
-        mSuppMatrix.postRotate(rotation, this.getWidth() / 2, this.getHeight() / 2);
-        setImageMatrix(getImageViewMatrix());
+        mZoomState.postScale(1, -1, this.getWidth() / 2, this.getHeight() / 2);
+        mZoomState.postRotate(rotation, this.getWidth() / 2, this.getHeight() / 2);
+        updateImageMatrix();
     }
 
 
     public Bitmap getImageBitmap() {
-        FastBitmapDrawable fbd = (FastBitmapDrawable) this.getDrawable();
+        Drawable drawable = this.getDrawable();
+        if (drawable instanceof TiledBitmapDrawable) {
+            return ((TiledBitmapDrawable) drawable).getBitmap();
+        }
+        FastBitmapDrawable fbd = (FastBitmapDrawable) drawable;
         if (fbd == null) return null;
         return fbd.getBitmap();
     }
@@ -918,14 +1531,14 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
     private void zoomTo(float scale) {
         if (LOG_ENABLED) {
-            Log.i(LOG_TAG, "zoomTo: " + scale);
+            ZoomLog.i(LOG_TAG, "zoomTo: " + scale);
         }
 
 //		if ( scale > getMaxScale() ) scale = getMaxScale();
 //		if ( scale < getMinScale() ) scale = getMinScale();
 
         if (LOG_ENABLED) {
-            Log.d(LOG_TAG, "sanitized scale: " + scale);
+            ZoomLog.d(LOG_TAG, "sanitized scale: " + scale);
         }
 
 
@@ -944,6 +1557,17 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         zoomTo(scale, center.x, center.y, durationMs);
     }
 
+    /**
+     * Scale to the target scale, animating as set for the given animation type
+     *
+     * @param scale the target zoom
+     * @param type  the kind of zoom
+     */
+    public void zoomTo(float scale, AnimationType type) {
+        PointF center = getCenter();
+        zoomTo(scale, center.x, center.y, type);
+    }
+
     private void zoomTo(float scale, float centerX, float centerY) {
         //delete maxscale judge
         //if ( scale > getMaxScale() ) scale = getMaxScale();
@@ -972,92 +1596,366 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     private void panBy(double dx, double dy) {
-        RectF rect = getBitmapRect();
-        mScrollRect.set((float) dx, (float) dy, 0, 0);
-        updateRect(rect, mScrollRect);
-        postTranslate(mScrollRect.left, mScrollRect.top);
-        center();
+        mZoomState.panBy((float) dx, (float) dy);
+        updateImageMatrix();
     }
 
     protected void updateRect(RectF bitmapRect, RectF scrollRect) {
         if (bitmapRect == null) return;
 
-        if (bitmapRect.top >= 0 && bitmapRect.bottom <= mThisHeight) scrollRect.top = 0;
-        if (bitmapRect.left >= 0 && bitmapRect.right <= mThisWidth) scrollRect.left = 0;
-        if (bitmapRect.top + scrollRect.top >= 0 && bitmapRect.bottom > mThisHeight)
-            scrollRect.top = (int) (0 - bitmapRect.top);
-        if (bitmapRect.bottom + scrollRect.top <= (mThisHeight) && bitmapRect.top < 0)
-            scrollRect.top = (int) ((mThisHeight) - bitmapRect.bottom);
-        if (bitmapRect.left + scrollRect.left >= 0) scrollRect.left = (int) (0 - bitmapRect.left);
-        if (bitmapRect.right + scrollRect.left <= (mThisWidth))
-            scrollRect.left = (int) ((mThisWidth) - bitmapRect.right);
+        mDelta[0] = scrollRect.left;
+        mDelta[1] = scrollRect.top;
+        ZoomMath.clampScroll(bitmapRect.left, bitmapRect.top, bitmapRect.right, bitmapRect.bottom, mThisWidth, mThisHeight, mDelta);
+        scrollRect.left = mDelta[0];
+        scrollRect.top = mDelta[1];
     }
 
+    /**
+     * Animated scroll. A scroll started while another one is running
+     * is merged with the distance the previous one had still to cover.
+     *
+     * @param distanceX
+     * @param distanceY
+     * @param durationMs
+     */
     protected void scrollBy(float distanceX, float distanceY, final double durationMs) {
-        final double dx = distanceX;
-        final double dy = distanceY;
-        final long startTime = System.currentTimeMillis();
-        mHandler.post(new Runnable() {
+        mFlingAnimation.cancel();
+        mPanAnimation.start(distanceX, distanceY, getAnimationSpec(AnimationType.PAN).getEasing(), durationMs);
+    }
 
-            double old_x = 0;
-            double old_y = 0;
+    /**
+     * Animated scroll, with the easing and duration of the given animation type
+     *
+     * @param distanceX
+     * @param distanceY
+     * @param type
+     */
+    protected void scrollBy(float distanceX, float distanceY, AnimationType type) {
+        AnimationSpec spec = getAnimationSpec(type);
+        float distance = (float) Math.hypot(distanceX, distanceY);
+        mFlingAnimation.cancel();
+        mPanAnimation.start(distanceX, distanceY, spec.getEasing(), spec.getDuration(distance));
+    }
 
-            @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-                double currentMs = Math.min(durationMs, now - startTime);
-                double x = mEasing.easeOut(currentMs, 0, dx, durationMs);
-                double y = mEasing.easeOut(currentMs, 0, dy, durationMs);
-                panBy((x - old_x), (y - old_y));
-                old_x = x;
-                old_y = y;
-                if (currentMs < durationMs) {
-                    mHandler.post(this);
-                } else {
-                    RectF centerRect = getCenter(mSuppMatrix);
-                    if (centerRect.left != 0 || centerRect.top != 0)
-                        scrollBy(centerRect.left, centerRect.top);
-                }
-            }
-        });
+    /**
+     * Fling the image with the given velocity. The motion decelerates with friction
+     * and bounces back when it passes the image edges.
+     *
+     * @param velocityX horizontal velocity, in px/s
+     * @param velocityY vertical velocity, in px/s
+     */
+    protected void fling(float velocityX, float velocityY) {
+        RectF rect = getBitmapRect();
+        if (rect == null) return;
+
+        mPanAnimation.cancel();
+        mFlingAnimation.start(rect, velocityX, velocityY);
+    }
+
+    /**
+     * Stop a running fling where it is
+     */
+    public void stopFling() {
+        if (mFlingAnimation.isRunning()) {
+            mFlingAnimation.cancel();
+            center();
+        }
+    }
+
+    public boolean isFlinging() {
+        return mFlingAnimation.isRunning();
     }
 
+    /**
+     * Animated zoom. Replaces any zoom animation already running.
+     *
+     * @param scale
+     * @param centerX
+     * @param centerY
+     * @param durationMs
+     */
     protected void zoomTo(float scale, float centerX, float centerY, final float durationMs) {
+        zoomTo(scale, centerX, centerY, getAnimationSpec(AnimationType.ZOOM).getEasing(), durationMs);
+    }
+
+    /**
+     * Animated zoom, with the easing and duration of the given animation type
+     *
+     * @param scale
+     * @param centerX
+     * @param centerY
+     * @param type
+     */
+    protected void zoomTo(float scale, float centerX, float centerY, AnimationType type) {
+        AnimationSpec spec = getAnimationSpec(type);
+        float target = Math.min(scale, getMaxScale());
+        // zoom levels: one unit per doubling, or halving, of the scale
+        float distance = (float) Math.abs(Math.log(target / getScale()) / Math.log(2));
+        zoomTo(scale, centerX, centerY, spec.getEasing(), spec.getDuration(distance));
+    }
+
+    private void zoomTo(float scale, float centerX, float centerY, Easing easing, float durationMs) {
         if (scale > getMaxScale()) scale = getMaxScale();
 
-        final long startTime = System.currentTimeMillis();
         final float oldScale = getScale();
 
-        final float deltaScale = scale - oldScale;
+        mZoomState.getZoomFocus(scale, centerX, centerY, mDelta);
+        final float destX = mDelta[0];
+        final float destY = mDelta[1];
+
+        // the zoom re-centers the image at every frame: a pending scroll would fight it
+        mPanAnimation.cancel();
+        mFlingAnimation.cancel();
+        mZoomAnimation.start(oldScale, scale, destX, destY, easing, durationMs);
+    }
+
+    /**
+     * Stop the running zoom and scroll animations where they are
+     */
+    public void cancelAnimations() {
+        mAnimationEngine.cancelAll();
+        onMotionStopped();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().getApplicationContext().registerComponentCallbacks(mTrimMemoryCallbacks);
+    }
 
-        Matrix m = new Matrix(mSuppMatrix);
-        m.postScale(scale, scale, centerX, centerY);
-        RectF rect = getCenter(m);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getContext().getApplicationContext().unregisterComponentCallbacks(mTrimMemoryCallbacks);
+        cancelAnimations();
+    }
 
-        final float destX = centerX + rect.left * scale;
-        final float destY = centerY + rect.top * scale;
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE) {
+            // back from background: the tiles dropped meanwhile, the full quality if zoomed in
+            updateDrawableViewport();
+            restoreTrimmedImage();
+        }
+    }
 
-        mHandler.post(new Runnable() {
+    private class PanAnimation extends Animation {
 
-            @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-                float currentMs = Math.min(durationMs, now - startTime);
-                float newScale = (float) mEasing.easeInOut(currentMs, 0, deltaScale, durationMs);
-                zoomTo(oldScale + newScale, destX, destY);
-                if (currentMs < durationMs) {
-                    mHandler.post(this);
-                } else {
-                    onZoomAnimationCompleted();
-                    center();
-                }
+        private double mDx, mDy;
+        private double mOldX, mOldY;
+        private Easing mEasing;
+
+        void start(double dx, double dy, Easing easing, double durationMs) {
+            if (isRunning()) {
+                dx += mDx - mOldX;
+                dy += mDy - mOldY;
             }
-        });
+            mDx = dx;
+            mDy = dy;
+            mOldX = 0;
+            mOldY = 0;
+            mEasing = easing;
+            mAnimationEngine.start(this, durationMs);
+        }
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            double x = mEasing.easeOut(currentMs, 0, mDx, durationMs);
+            double y = mEasing.easeOut(currentMs, 0, mDy, durationMs);
+            panBy((x - mOldX), (y - mOldY));
+            mOldX = x;
+            mOldY = y;
+        }
+
+        @Override
+        protected void onEnd() {
+            mZoomState.getCenterDelta(mDelta);
+            if (mDelta[0] != 0 || mDelta[1] != 0)
+                scrollBy(mDelta[0], mDelta[1]);
+        }
+    }
+
+    private class FlingAnimation extends Animation {
+
+        private final FlingPhysics mFlingX = new FlingPhysics();
+        private final FlingPhysics mFlingY = new FlingPhysics();
+        private double mLastMs;
+
+        void start(RectF bitmapRect, float velocityX, float velocityY) {
+            mFlingX.start(bitmapRect.left, velocityX, mThisWidth - bitmapRect.width(), 0);
+            mFlingY.start(bitmapRect.top, velocityY, mThisHeight - bitmapRect.height(), 0);
+            mLastMs = 0;
+            mAnimationEngine.start(this, DURATION_UNBOUNDED);
+        }
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            float dt = (float) ((currentMs - mLastMs) / 1000);
+            mLastMs = currentMs;
+            if (dt <= 0) return;
+
+            float oldX = mFlingX.getPosition();
+            float oldY = mFlingY.getPosition();
+            boolean moving = mFlingX.step(dt) | mFlingY.step(dt);
+            postTranslate(mFlingX.getPosition() - oldX, mFlingY.getPosition() - oldY);
+
+            if (!moving) finish();
+        }
+
+        @Override
+        protected void onEnd() {
+            center();
+        }
+    }
+
+    private class ZoomAnimation extends Animation {
+
+        private float mOldScale, mDeltaScale;
+        private float mDestX, mDestY;
+        private Easing mEasing;
+
+        void start(float oldScale, float scale, float destX, float destY, Easing easing, double durationMs) {
+            mOldScale = oldScale;
+            mEasing = easing;
+            mDeltaScale = scale - oldScale;
+            mDestX = destX;
+            mDestY = destY;
+            mAnimationEngine.start(this, durationMs);
+        }
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            float newScale = (float) mEasing.easeInOut(currentMs, 0, mDeltaScale, durationMs);
+            zoomTo(mOldScale + newScale, mDestX, mDestY);
+        }
+
+        @Override
+        protected void onEnd() {
+            onZoomAnimationCompleted();
+            center();
+        }
     }
 
     @Override
     public void dispose() {
+        cancelAnimations();
+        cancelImageLoad();
         clear();
     }
 
+    /**
+     * Save the zoom and pan, relative to the image and the view size: restored in a
+     * view of another size, e.g. after a rotation, the same point of the image is
+     * centered at the same zoom relative to the min zoom.<br />
+     * Only the zoom of an image set with {@link #setImageSource(ImageSource)} is saved:
+     * a bitmap or a drawable has no key to tell whether the restored image is the same.
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState state = new SavedState(super.onSaveInstanceState());
+        state.mDisplayType = mScaleType.ordinal();
+        if (mPendingState != null) {
+            // not applied yet, keep it for the next instance
+            state.mImageKey = mPendingState.mImageKey;
+            state.mScale = mPendingState.mScale;
+            state.mFocusX = mPendingState.mFocusX;
+            state.mFocusY = mPendingState.mFocusY;
+        } else if (mSourceKey != null && getDrawable() != null && mZoomState.getFocus(mFocus)) {
+            state.mImageKey = mSourceKey;
+            state.mScale = getScale() / getMinScale();
+            state.mFocusX = mFocus[0];
+            state.mFocusY = mFocus[1];
+        }
+        return state;
+    }
+
+    /**
+     * The zoom and pan are restored on the next layout with the saved image displayed:
+     * set the same {@link ImageSource} again, its bitmap usually comes from the memory cache
+     * of the loader, which survives configuration changes.
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState saved = (SavedState) state;
+        super.onRestoreInstanceState(saved.getSuperState());
+
+        final DisplayType[] types = DisplayType.values();
+        if (saved.mDisplayType >= 0 && saved.mDisplayType < types.length) {
+            setDisplayType(types[saved.mDisplayType]);
+        }
+        if (saved.mImageKey != null && saved.mScale > 0) {
+            mPendingState = saved;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Restore the saved zoom and pan if the saved image is displayed, drop them otherwise.
+     * Invoked by the layout with an image displayed, after the base matrix has been computed.
+     */
+    private void applyPendingState() {
+        final SavedState state = mPendingState;
+        mPendingState = null;
+        // a keyless image, e.g. a bitmap, is another image
+        if (state.mImageKey.equals(mSourceKey)) {
+            mZoomState.restoreFocus(state.mScale, state.mFocusX, state.mFocusY);
+            // keep it on the next size change, as a user zoom
+            mUserScaled = true;
+        }
+    }
+
+    /**
+     * Zoom and pan of the view, see {@link #onSaveInstanceState()}
+     */
+    public static class SavedState extends BaseSavedState {
+
+        String mImageKey;
+        int mDisplayType = -1;
+        // scale relative to the min scale, 0 if there is no image
+        float mScale;
+        // image point at the view center, relative to the image
+        float mFocusX;
+        float mFocusY;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            mImageKey = in.readString();
+            mDisplayType = in.readInt();
+            mScale = in.readFloat();
+            mFocusX = in.readFloat();
+            mFocusY = in.readFloat();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeString(mImageKey);
+            out.writeInt(mDisplayType);
+            out.writeFloat(mScale);
+            out.writeFloat(mFocusX);
+            out.writeFloat(mFocusY);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.baiwang.imagezoom.animation;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.ViewConfiguration;
+
+/**
+ * Vsync aligned frames from {@link Choreographer}. Before Jelly Bean, frames are
+ * emulated posting to the main thread every {@link ViewConfiguration#getFrameDelay()}.
+ */
+public abstract class AndroidFrameScheduler implements AnimationEngine.FrameScheduler {
+
+    public static AnimationEngine.FrameScheduler create() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerScheduler();
+        }
+        return new HandlerScheduler();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerScheduler extends AndroidFrameScheduler implements Choreographer.FrameCallback {
+
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+        private AnimationEngine mEngine;
+
+        @Override
+        public void postFrame(AnimationEngine engine) {
+            mEngine = engine;
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void cancelFrame(AnimationEngine engine) {
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mEngine.doFrame(frameTimeNanos);
+        }
+    }
+
+    private static class HandlerScheduler extends AndroidFrameScheduler implements Runnable {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private AnimationEngine mEngine;
+
+        @Override
+        public void postFrame(AnimationEngine engine) {
+            mEngine = engine;
+            mHandler.postDelayed(this, ViewConfiguration.getFrameDelay());
+        }
+
+        @Override
+        public void cancelFrame(AnimationEngine engine) {
+            mHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            mEngine.doFrame(nanoTime());
+        }
+    }
+}
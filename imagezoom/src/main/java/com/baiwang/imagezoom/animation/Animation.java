@@ -0,0 +1,92 @@
+package com.baiwang.imagezoom.animation;
+
+/**
+ * A reusable, time based animation driven by an {@link AnimationEngine}.<br />
+ * Subclasses keep their own start/end values and apply them in {@link #onUpdate(double, double)}.
+ * Instances are meant to be allocated once and restarted, so running an animation
+ * does not allocate anything.
+ */
+public abstract class Animation {
+
+    /**
+     * Duration of animations which end themselves calling {@link #finish()}
+     */
+    public static final double DURATION_UNBOUNDED = Double.POSITIVE_INFINITY;
+
+    private static final long NANOS_PER_MS = 1000000L;
+
+    private long mStartNanos;
+    private long mDurationNanos;
+    private boolean mRunning;
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * @return the elapsed time, in milliseconds, at the given frame
+     */
+    public double getElapsedMs(long frameTimeNanos) {
+        return Math.min(mDurationNanos, Math.max(0, frameTimeNanos - mStartNanos)) / (double) NANOS_PER_MS;
+    }
+
+    public double getDurationMs() {
+        if (mDurationNanos == Long.MAX_VALUE) return DURATION_UNBOUNDED;
+        return mDurationNanos / (double) NANOS_PER_MS;
+    }
+
+    void start(long startNanos, double durationMs) {
+        mStartNanos = startNanos;
+        mDurationNanos = durationMs == DURATION_UNBOUNDED ? Long.MAX_VALUE : Math.max(0, (long) (durationMs * NANOS_PER_MS));
+        mRunning = true;
+    }
+
+    /**
+     * Advance to the given frame
+     *
+     * @param frameTimeNanos the frame time
+     * @return true if the animation is still running
+     */
+    boolean doFrame(long frameTimeNanos) {
+        if (!mRunning) return false;
+
+        final boolean last = frameTimeNanos - mStartNanos >= mDurationNanos;
+        onUpdate(getElapsedMs(frameTimeNanos), getDurationMs());
+        if (last && mRunning) {
+            mRunning = false;
+            onEnd();
+        }
+        return mRunning;
+    }
+
+    /**
+     * Stop the animation where it is, without invoking {@link #onEnd()}
+     */
+    public void cancel() {
+        mRunning = false;
+    }
+
+    /**
+     * End the animation at the current frame and invoke {@link #onEnd()}
+     */
+    protected final void finish() {
+        if (mRunning) {
+            mRunning = false;
+            onEnd();
+        }
+    }
+
+    /**
+     * Apply the animation state
+     *
+     * @param currentMs  elapsed time, between 0 and durationMs
+     * @param durationMs total duration
+     */
+    protected abstract void onUpdate(double currentMs, double durationMs);
+
+    /**
+     * Invoked once the last frame has been applied
+     */
+    protected void onEnd() {
+    }
+}
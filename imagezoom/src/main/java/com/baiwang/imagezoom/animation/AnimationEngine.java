@@ -0,0 +1,131 @@
+package com.baiwang.imagezoom.animation;
+
+import java.util.ArrayList;
+
+/**
+ * Ticks all the running animations of a view once per frame.<br />
+ * A single frame callback is scheduled while at least one animation runs: every animation
+ * sees the same frame time, and nothing is allocated per animation or per frame.
+ */
+public class AnimationEngine {
+
+    /**
+     * Source of frame callbacks
+     */
+    public interface FrameScheduler {
+
+        /**
+         * @return the current time, in the same time base as the frame times
+         */
+        long nanoTime();
+
+        /**
+         * Request a call to {@link AnimationEngine#doFrame(long)} for the next frame
+         */
+        void postFrame(AnimationEngine engine);
+
+        void cancelFrame(AnimationEngine engine);
+    }
+
+    /**
+     * Notified around each frame, e.g. to commit once what all the animations changed
+     */
+    public interface FrameListener {
+
+        /**
+         * @param frameTimeNanos the time of the frame, in the time base of {@link FrameScheduler#nanoTime()}
+         */
+        void onBeginFrame(long frameTimeNanos);
+
+        void onEndFrame();
+    }
+
+    private final FrameScheduler mScheduler;
+    private FrameListener mFrameListener;
+    private final ArrayList<Animation> mAnimations = new ArrayList<>();
+    private boolean mFramePosted;
+    private boolean mInFrame;
+
+    public AnimationEngine(FrameScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    public FrameScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    public void setFrameListener(FrameListener listener) {
+        mFrameListener = listener;
+    }
+
+    /**
+     * Start, or restart, the given animation now
+     *
+     * @param animation
+     * @param durationMs
+     */
+    public void start(Animation animation, double durationMs) {
+        animation.start(mScheduler.nanoTime(), durationMs);
+        if (!mAnimations.contains(animation)) {
+            mAnimations.add(animation);
+        }
+        if (!mFramePosted && !mInFrame) {
+            mFramePosted = true;
+            mScheduler.postFrame(this);
+        }
+    }
+
+    public void cancel(Animation animation) {
+        animation.cancel();
+    }
+
+    public void cancelAll() {
+        for (int i = 0; i < mAnimations.size(); i++) {
+            mAnimations.get(i).cancel();
+        }
+        mAnimations.clear();
+        if (mFramePosted) {
+            mFramePosted = false;
+            mScheduler.cancelFrame(this);
+        }
+    }
+
+    /**
+     * @return true if any animation is running
+     */
+    public boolean isAnimating() {
+        for (int i = 0; i < mAnimations.size(); i++) {
+            if (mAnimations.get(i).isRunning()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance every running animation to the given frame time
+     *
+     * @param frameTimeNanos
+     */
+    public void doFrame(long frameTimeNanos) {
+        mFramePosted = false;
+        mInFrame = true;
+        if (mFrameListener != null) mFrameListener.onBeginFrame(frameTimeNanos);
+        try {
+            // animations started by a callback during this frame are appended and ticked as well
+            for (int i = 0; i < mAnimations.size(); i++) {
+                mAnimations.get(i).doFrame(frameTimeNanos);
+            }
+        } finally {
+            mInFrame = false;
+            if (mFrameListener != null) mFrameListener.onEndFrame();
+        }
+
+        for (int i = mAnimations.size() - 1; i >= 0; i--) {
+            if (!mAnimations.get(i).isRunning()) mAnimations.remove(i);
+        }
+
+        if (!mAnimations.isEmpty() && !mFramePosted) {
+            mFramePosted = true;
+            mScheduler.postFrame(this);
+        }
+    }
+}
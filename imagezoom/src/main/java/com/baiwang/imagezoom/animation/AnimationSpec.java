@@ -0,0 +1,59 @@
+package com.baiwang.imagezoom.animation;
+
+import com.baiwang.imagezoom.easing.Easing;
+
+/**
+ * Easing and duration of one kind of animation.<br />
+ * The duration is either fixed, or grows with the distance covered by the animation,
+ * between a min and a max duration: {@code min(max, min + msPerUnit * distance)}.
+ * What a distance unit is depends on the animation: pixels for a scroll, zoom
+ * levels (a doubling of the scale) for a zoom.
+ */
+public class AnimationSpec {
+
+    private final Easing mEasing;
+    private final float mMinDurationMs;
+    private final float mMaxDurationMs;
+    private final float mMsPerUnit;
+
+    /**
+     * @param easing
+     * @param durationMs fixed duration
+     */
+    public AnimationSpec(Easing easing, float durationMs) {
+        this(easing, durationMs, durationMs, 0);
+    }
+
+    /**
+     * @param easing
+     * @param minDurationMs duration of an animation covering no distance
+     * @param maxDurationMs longest duration
+     * @param msPerUnit     duration added per unit of distance
+     */
+    public AnimationSpec(Easing easing, float minDurationMs, float maxDurationMs, float msPerUnit) {
+        if (easing == null) throw new IllegalArgumentException("easing cannot be null");
+        mEasing = easing;
+        mMinDurationMs = Math.max(0, minDurationMs);
+        mMaxDurationMs = Math.max(mMinDurationMs, maxDurationMs);
+        mMsPerUnit = Math.max(0, msPerUnit);
+    }
+
+    public Easing getEasing() {
+        return mEasing;
+    }
+
+    /**
+     * @return a copy of this spec using the given easing
+     */
+    public AnimationSpec withEasing(Easing easing) {
+        return new AnimationSpec(easing, mMinDurationMs, mMaxDurationMs, mMsPerUnit);
+    }
+
+    /**
+     * @param distance the distance covered, in the units of the animation
+     * @return the duration, in milliseconds
+     */
+    public float getDuration(float distance) {
+        return Math.min(mMaxDurationMs, mMinDurationMs + mMsPerUnit * Math.abs(distance));
+    }
+}
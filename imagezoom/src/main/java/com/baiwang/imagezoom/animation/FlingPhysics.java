@@ -0,0 +1,122 @@
+package com.baiwang.imagezoom.animation;
+
+/**
+ * One axis of a fling: the velocity decays exponentially with friction while the position is
+ * inside [min, max]. Past an edge a critically damped spring pulls the position back, so the
+ * content overshoots and bounces back to the edge.
+ */
+public class FlingPhysics {
+
+    /** per second velocity decay factor, e^-friction */
+    public static final float DEFAULT_FRICTION = 3f;
+    /** spring stiffness past the edges, in 1/s^2 */
+    public static final float DEFAULT_STIFFNESS = 300f;
+    /** velocity, in px/s, below which the motion stops */
+    public static final float DEFAULT_STOP_VELOCITY = 20f;
+
+    /** longest step integrated at once, keeps the spring stable across dropped frames */
+    private static final float MAX_STEP = 0.05f;
+    private static final float SETTLE_DISTANCE = 0.5f;
+
+    private float mFriction = DEFAULT_FRICTION;
+    private float mStiffness = DEFAULT_STIFFNESS;
+    private float mDamping = 2f * (float) Math.sqrt(DEFAULT_STIFFNESS);
+    private float mStopVelocity = DEFAULT_STOP_VELOCITY;
+
+    private float mPosition;
+    private float mVelocity;
+    private float mMin, mMax;
+    private boolean mFinished = true;
+
+    public void setFriction(float friction) {
+        mFriction = friction;
+    }
+
+    public void setStiffness(float stiffness) {
+        mStiffness = stiffness;
+        mDamping = 2f * (float) Math.sqrt(stiffness);
+    }
+
+    public void setStopVelocity(float velocity) {
+        mStopVelocity = velocity;
+    }
+
+    /**
+     * @param position start position
+     * @param velocity start velocity, in px/s
+     * @param min      lowest resting position
+     * @param max      highest resting position. Below min, e.g. content smaller than the view,
+     *                 there is nothing to scroll: the position stays where it is
+     */
+    public void start(float position, float velocity, float min, float max) {
+        mPosition = position;
+        if (min > max) {
+            // content centered by the caller, keep it there
+            mMin = position;
+            mMax = position;
+        } else {
+            mMin = min;
+            mMax = max;
+        }
+        // nothing to scroll on this axis
+        mVelocity = mMax > mMin ? velocity : 0;
+        mFinished = false;
+    }
+
+    public float getPosition() {
+        return mPosition;
+    }
+
+    public float getVelocity() {
+        return mVelocity;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void stop() {
+        mFinished = true;
+        mVelocity = 0;
+    }
+
+    /**
+     * Advance the motion
+     *
+     * @param dt elapsed time, in seconds
+     * @return true if still moving
+     */
+    public boolean step(float dt) {
+        while (!mFinished && dt > 0) {
+            float step = Math.min(dt, MAX_STEP);
+            integrate(step);
+            dt -= step;
+        }
+        return !mFinished;
+    }
+
+    private void integrate(float dt) {
+        if (mPosition < mMin || mPosition > mMax) {
+            final float edge = mPosition < mMin ? mMin : mMax;
+            final float accel = -mStiffness * (mPosition - edge) - mDamping * mVelocity;
+            mVelocity += accel * dt;
+            mPosition += mVelocity * dt;
+
+            final boolean crossed = edge == mMin ? mPosition >= mMin : mPosition <= mMax;
+            if (crossed || (Math.abs(mPosition - edge) < SETTLE_DISTANCE && Math.abs(mVelocity) < mStopVelocity)) {
+                mPosition = edge;
+                stop();
+            }
+        } else {
+            // exact integral of v0 * e^(-friction * t), independent of the frame rate
+            final float decay = (float) Math.exp(-mFriction * dt);
+            mPosition += mFriction > 0 ? mVelocity * (1 - decay) / mFriction : mVelocity * dt;
+            mVelocity *= decay;
+
+            if (Math.abs(mVelocity) < mStopVelocity) {
+                mPosition = Math.max(mMin, Math.min(mMax, mPosition));
+                stop();
+            }
+        }
+    }
+}
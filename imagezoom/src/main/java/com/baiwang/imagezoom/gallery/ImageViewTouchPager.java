@@ -0,0 +1,101 @@
+package com.baiwang.imagezoom.gallery;
+
+import android.content.Context;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+import com.baiwang.imagezoom.ImageViewTouch;
+
+/**
+ * Swipeable gallery of {@link ImageViewTouch} pages, see {@link ImageViewTouchPagerAdapter}.<br />
+ * A horizontal drag pans the current image as long as it can scroll that way, and moves the
+ * pager as soon as the image reaches its edge, within the same gesture. Multi touch gestures
+ * always go to the image. Zoomed pages are reset once they are off screen.
+ */
+public class ImageViewTouchPager extends ViewPager {
+
+    private float mLastMotionX;
+    // true while the current image takes the moves of the gesture
+    private boolean mImageDragging;
+
+    public ImageViewTouchPager(Context context) {
+        super(context);
+        init();
+    }
+
+    public ImageViewTouchPager(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        addOnPageChangeListener(new SimpleOnPageChangeListener() {
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                final PagerAdapter adapter = getAdapter();
+                if (state == SCROLL_STATE_IDLE && adapter instanceof ImageViewTouchPagerAdapter) {
+                    ((ImageViewTouchPagerAdapter) adapter).resetOffscreenViews();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the image of the current page, null if there is none
+     */
+    public ImageViewTouch getCurrentImageView() {
+        final PagerAdapter adapter = getAdapter();
+        if (adapter instanceof ImageViewTouchPagerAdapter) {
+            return ((ImageViewTouchPagerAdapter) adapter).getPrimaryView();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLastMotionX = ev.getX();
+                mImageDragging = false;
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                final int dx = (int) (ev.getX() - mLastMotionX);
+                mLastMotionX = ev.getX();
+                final ImageViewTouch image = getCurrentImageView();
+                if (image != null && (ev.getPointerCount() > 1 || (dx == 0 ? mImageDragging : image.canScroll(dx)))) {
+                    // the image takes this move, the pager doesn't see it
+                    mImageDragging = true;
+                    return false;
+                }
+                if (mImageDragging) {
+                    // the image hands the drag back. The pager would otherwise ignore the rest of
+                    // the gesture, restart it from here instead, once: it takes over from the image
+                    // edge, without waiting for the next gesture nor jumping by the distance panned so far
+                    mImageDragging = false;
+                    restartGesture(ev);
+                }
+                break;
+        }
+        try {
+            return super.onInterceptTouchEvent(ev);
+        } catch (IllegalArgumentException e) {
+            // pointer index out of range, on some multi touch sequences
+            return false;
+        }
+    }
+
+    private void restartGesture(MotionEvent ev) {
+        final MotionEvent down = MotionEvent.obtain(ev);
+        down.setAction(MotionEvent.ACTION_DOWN);
+        try {
+            super.onInterceptTouchEvent(down);
+        } catch (IllegalArgumentException e) {
+            // see onInterceptTouchEvent
+        } finally {
+            down.recycle();
+        }
+    }
+}
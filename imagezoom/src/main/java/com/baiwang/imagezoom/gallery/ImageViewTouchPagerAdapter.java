@@ -0,0 +1,192 @@
+package com.baiwang.imagezoom.gallery;
+
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.baiwang.imagezoom.ImageViewTouch;
+import com.baiwang.imagezoom.ImageViewTouchBase.DisplayType;
+import com.baiwang.imagezoom.loader.ImageLoader;
+import com.baiwang.imagezoom.loader.ImageSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Pages of {@link ImageViewTouch}, one image each, for a {@link ImageViewTouchPager}.<br />
+ * The views are recycled: only the pages kept by the pager, the current one and its offscreen
+ * neighbours, hold a view. All of them load through the same {@link ImageLoader}, thus share
+ * its memory cache and bitmap pool, with sampled decodes. Once a page is current, the images
+ * right after the offscreen pages on both sides are prefetched into the memory cache at the
+ * size the page decodes at, so they are displayed from the cache once swiped in. A page swiped
+ * in before its prefetch completes shares the decode of the prefetch.
+ */
+public abstract class ImageViewTouchPagerAdapter extends PagerAdapter {
+
+    /**
+     * Views kept for reuse, on top of the attached ones
+     */
+    private static final int MAX_RECYCLED_VIEWS = 2;
+
+    private final ImageLoader mImageLoader;
+    private final ArrayList<ImageViewTouch> mActiveViews = new ArrayList<>();
+    private final ArrayDeque<ImageViewTouch> mRecycledViews = new ArrayDeque<>();
+    private ImageViewTouch mPrimaryView;
+    private int mPrimaryPosition = -1;
+    // prefetches by page
+    private final SparseArray<ImageLoader.Task> mPrefetches = new SparseArray<>();
+
+    public ImageViewTouchPagerAdapter() {
+        this(ImageLoader.getInstance());
+    }
+
+    /**
+     * @param loader the loader shared by all the pages
+     */
+    public ImageViewTouchPagerAdapter(ImageLoader loader) {
+        mImageLoader = loader;
+    }
+
+    /**
+     * @return the image of the given page
+     */
+    public abstract ImageSource getImageSource(int position);
+
+    /**
+     * Create a page view, when none can be recycled
+     */
+    protected ImageViewTouch onCreateView(ViewGroup container) {
+        ImageViewTouch view = new ImageViewTouch(container.getContext());
+        view.setDisplayType(DisplayType.FIT_TO_SCREEN);
+        return view;
+    }
+
+    /**
+     * Setup a new or recycled page view for the given page, before its image is set
+     */
+    protected void onBindView(ImageViewTouch view, int position) {
+    }
+
+    public ImageLoader getImageLoader() {
+        return mImageLoader;
+    }
+
+    /**
+     * @return the view of the current page, null if there is none yet
+     */
+    public ImageViewTouch getPrimaryView() {
+        return mPrimaryView;
+    }
+
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        ImageViewTouch view = mRecycledViews.poll();
+        if (view == null) {
+            view = onCreateView(container);
+        }
+        view.setImageLoader(mImageLoader);
+        view.setSampledDecodeEnabled(true);
+        container.addView(view);
+        mActiveViews.add(view);
+
+        onBindView(view, position);
+        view.setImageSource(getImageSource(position));
+        return view;
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        final ImageViewTouch view = (ImageViewTouch) object;
+        container.removeView(view);
+        mActiveViews.remove(view);
+        // cancels the load and gives the bitmap back to the cache
+        view.dispose();
+        if (view == mPrimaryView) {
+            mPrimaryView = null;
+        }
+        if (mRecycledViews.size() < MAX_RECYCLED_VIEWS) {
+            mRecycledViews.push(view);
+        }
+    }
+
+    @Override
+    public void setPrimaryItem(ViewGroup container, int position, Object object) {
+        super.setPrimaryItem(container, position, object);
+        mPrimaryView = (ImageViewTouch) object;
+        if (position == mPrimaryPosition) return;
+
+        mPrimaryPosition = position;
+        final int distance = container instanceof ViewPager ? ((ViewPager) container).getOffscreenPageLimit() + 1 : 1;
+        // the prefetches of the pages now offscreen keep running, their pages load from them
+        for (int i = mPrefetches.size() - 1; i >= 0; i--) {
+            final int prefetched = mPrefetches.keyAt(i);
+            if (prefetched < position - distance || prefetched > position + distance) {
+                mPrefetches.valueAt(i).cancel();
+                mPrefetches.removeAt(i);
+            }
+        }
+        // forward first, the likely direction
+        prefetch(position + distance);
+        prefetch(position - distance);
+    }
+
+    private void prefetch(int position) {
+        if (position < 0 || position >= getCount() || mPrefetches.get(position) != null) return;
+        final ImageLoader.Task task = mPrimaryView.prefetchImageSource(getImageSource(position));
+        if (task != null) {
+            mPrefetches.put(position, task);
+        }
+    }
+
+    private void cancelPrefetch() {
+        for (int i = 0; i < mPrefetches.size(); i++) {
+            mPrefetches.valueAt(i).cancel();
+        }
+        mPrefetches.clear();
+    }
+
+    /**
+     * Zoom out the pages which are not the current one, see {@link ImageViewTouchPager}
+     */
+    void resetOffscreenViews() {
+        for (int i = 0; i < mActiveViews.size(); i++) {
+            final ImageViewTouch view = mActiveViews.get(i);
+            if (view != mPrimaryView) {
+                view.resetDisplay();
+            }
+        }
+    }
+
+    /**
+     * Every page is bound again: cheap, the views are recycled and the images are cached
+     */
+    @Override
+    public int getItemPosition(Object object) {
+        return POSITION_NONE;
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        // the images around the current one may have changed
+        cancelPrefetch();
+        mPrimaryPosition = -1;
+        super.notifyDataSetChanged();
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return view == object;
+    }
+
+    /**
+     * Cancel the prefetches and drop the recycled views, e.g. when the gallery is closed.
+     * The attached pages are released by the pager.
+     */
+    public void release() {
+        cancelPrefetch();
+        mPrimaryPosition = -1;
+        mRecycledViews.clear();
+    }
+}
@@ -11,8 +11,18 @@ import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.baiwang.imagezoom.math.ZoomMath;
+import com.baiwang.imagezoom.utils.IDisposable;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Fast bitmap drawable. Does not support states. it only
@@ -20,19 +30,51 @@ import java.io.InputStream;
  *
  * @author alessandro
  */
-public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
+public class FastBitmapDrawable extends Drawable implements IBitmapDrawable, IDisposable {
+
+    private static final ExecutorService sMipmapExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * No mipmap level is smaller than this, in pixels, on its shortest side
+     */
+    private static final int MIN_LEVEL_SIZE = 64;
 
     private Bitmap oriBitmap;
+    private IBitmapReleaser mReleaser;
 
     private final Paint mPaint;
     protected PorterDuffXfermode srcInDuffXfermode = new PorterDuffXfermode(Mode.SRC_IN);
     private final Rect mRect;
+    // visible part of the bitmap, see draw
+    private final Rect mVisibleRect = new Rect();
     private final int mIntrinsicWidth;
     private final int mIntrinsicHeight;
 
+    // mipmap state, see setDrawScale. Levels 1..n, main thread only
+    private final ArrayList<Bitmap> mLevels = new ArrayList<>();
+    private float mDrawScale = 1f;
+    private int mRequestedLevel;
+    private boolean mBuildingLevels;
+    // disposed while the levels were being built from them
+    private final ArrayList<Bitmap> mPendingLevels = new ArrayList<>();
+    private Bitmap mPendingRelease;
+    private IBitmapReleaser mPendingReleaser;
+    private int mGeneration;
+    private Handler mHandler;
+
 
     public FastBitmapDrawable(Bitmap b) {
+        this(b, null);
+    }
+
+    /**
+     * @param b        the bitmap to draw
+     * @param releaser notified when this drawable is disposed, e.g. a shared cache
+     *                 holding a reference on the bitmap for this drawable
+     */
+    public FastBitmapDrawable(Bitmap b, IBitmapReleaser releaser) {
         oriBitmap = b;
+        mReleaser = releaser;
         if (null != oriBitmap) {
             mIntrinsicWidth = oriBitmap.getWidth();
             mIntrinsicHeight = oriBitmap.getHeight();
@@ -53,6 +95,7 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
 
     public void setBitmap(Bitmap bitmap) {
         //mBitmap = bitmap;
+        if (bitmap != oriBitmap) dispose();
         oriBitmap = bitmap;
     }
 
@@ -66,7 +109,16 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
 //		canvas.drawRoundRect(mRectF, mxRadius, myRadius, mPaint); 
 //		mPaint.setXfermode(srcInDuffXfermode);
         try {
-            canvas.drawBitmap(oriBitmap, mRect, mRect, mPaint);
+            final Rect rect = getVisibleRect(canvas);
+            if (rect != null) {
+                final Bitmap level = getMipmapLevel(canvas);
+                if (level != null) {
+                    // zoomed out: the whole image is about on screen, the level is small
+                    canvas.drawBitmap(level, null, mRect, mPaint);
+                } else {
+                    canvas.drawBitmap(oriBitmap, rect, rect, mPaint);
+                }
+            }
         } catch (Exception e) {
 //
         }
@@ -74,12 +126,162 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
 //	    canvas.restoreToCount(sc);
     }
 
+    /**
+     * The part of the bitmap inside the canvas clip: zoomed in, only that much is drawn.
+     * The clip bounds are in the drawable coordinates, the image matrix already applied.
+     *
+     * @return the visible rect, null if nothing is visible
+     */
+    private Rect getVisibleRect(Canvas canvas) {
+        if (!canvas.getClipBounds(mVisibleRect)) {
+            // empty clip
+            return null;
+        }
+        // one more pixel around, for the bitmap filtering at the clip edges
+        mVisibleRect.inset(-1, -1);
+        if (!mVisibleRect.intersect(mRect)) {
+            return null;
+        }
+        return mVisibleRect;
+    }
+
+    /**
+     * Report the scale the bitmap is drawn at, e.g. the radius of the image matrix.
+     * Below 1/2 a reduced version of the bitmap is drawn instead, cheaper to downsample
+     * and free of aliasing: the GPU mipmaps the bitmap texture on hardware accelerated
+     * canvases, otherwise half size levels are built in background on first use.
+     * Report 1 to always draw the bitmap itself.
+     *
+     * @param scale
+     */
+    public void setDrawScale(float scale) {
+        mDrawScale = scale;
+    }
+
+    /**
+     * @return the reduced bitmap to draw, null to draw the bitmap itself
+     */
+    private Bitmap getMipmapLevel(Canvas canvas) {
+        if (mDrawScale > 0.5f || oriBitmap == null) return null;
+
+        if (canvas.isHardwareAccelerated()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && !oriBitmap.hasMipMap()) {
+                oriBitmap.setHasMipMap(true);
+            }
+            return null;
+        }
+        if (isHardware(oriBitmap)) {
+            // the pixels can't be read back on the CPU, nor drawn on this canvas anyway
+            return null;
+        }
+
+        final int level = ZoomMath.computeMipLevel(mDrawScale, getMaxLevel());
+        if (level > mLevels.size()) {
+            requestLevels(level);
+        }
+        // the closest level built so far
+        final int available = Math.min(level, mLevels.size());
+        return available > 0 ? mLevels.get(available - 1) : null;
+    }
+
+    private static boolean isHardware(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.getConfig() == Bitmap.Config.HARDWARE;
+    }
+
+    private int getMaxLevel() {
+        int level = 0;
+        int size = Math.min(mIntrinsicWidth, mIntrinsicHeight);
+        while ((size >>= 1) >= MIN_LEVEL_SIZE) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Build the missing levels up to the given one in background
+     */
+    private void requestLevels(final int level) {
+        mRequestedLevel = Math.max(mRequestedLevel, level);
+        if (mBuildingLevels) return;
+
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+        mBuildingLevels = true;
+        final int generation = mGeneration;
+        final Bitmap source = mLevels.isEmpty() ? oriBitmap : mLevels.get(mLevels.size() - 1);
+        final int count = mRequestedLevel - mLevels.size();
+
+        sMipmapExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Bitmap> levels = new ArrayList<>(count);
+                try {
+                    Bitmap previous = source;
+                    for (int i = 0; i < count; i++) {
+                        previous = Bitmap.createScaledBitmap(previous,
+                                Math.max(1, previous.getWidth() / 2), Math.max(1, previous.getHeight() / 2), true);
+                        levels.add(previous);
+                    }
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    // keep the levels built so far
+                }
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLevelsBuilt(generation, levels);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Invoked on the main thread
+     */
+    private void onLevelsBuilt(int generation, List<Bitmap> levels) {
+        mBuildingLevels = false;
+
+        if (generation != mGeneration) {
+            // bitmap replaced or disposed meanwhile
+            recycleLevels(levels);
+            recycleLevels(mPendingLevels);
+            if (mPendingReleaser != null) {
+                mPendingReleaser.releaseBitmap(mPendingRelease);
+                mPendingReleaser = null;
+                mPendingRelease = null;
+            }
+            return;
+        }
+
+        mLevels.addAll(levels);
+        if (!levels.isEmpty() && mRequestedLevel > mLevels.size()) {
+            requestLevels(mRequestedLevel);
+        }
+        invalidateSelf();
+    }
+
+    private static void recycleLevels(List<Bitmap> levels) {
+        for (int i = 0; i < levels.size(); i++) {
+            levels.get(i).recycle();
+        }
+        levels.clear();
+    }
+
     public void setRoundRadius(float xRadius, float yRadius) {
     }
 
+    /**
+     * Opaque when the bitmap has no alpha, e.g. a JPEG, and is drawn fully opaque:
+     * the views behind it then don't need to be drawn.
+     */
     @Override
     public int getOpacity() {
-        return PixelFormat.TRANSLUCENT;
+        if (oriBitmap == null || oriBitmap.isRecycled() || oriBitmap.hasAlpha()
+                || mPaint.getAlpha() < 255 || mPaint.getColorFilter() != null) {
+            return PixelFormat.TRANSLUCENT;
+        }
+        return PixelFormat.OPAQUE;
     }
 
     @Override
@@ -125,4 +327,32 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
     public Paint getPaint() {
         return mPaint;
     }
+
+    /**
+     * Give the bitmap back to its releaser, if any. The bitmap must not be drawn anymore.
+     */
+    @Override
+    public void dispose() {
+        mGeneration++;
+        mRequestedLevel = 0;
+        if (mBuildingLevels) {
+            // the next level may be scaling from the last one, recycle them once done
+            mPendingLevels.addAll(mLevels);
+            mLevels.clear();
+        } else {
+            recycleLevels(mLevels);
+        }
+
+        IBitmapReleaser releaser = mReleaser;
+        mReleaser = null;
+        if (releaser == null || oriBitmap == null) return;
+
+        if (mBuildingLevels) {
+            // the levels are being built from the bitmap, release it once done
+            mPendingRelease = oriBitmap;
+            mPendingReleaser = releaser;
+        } else {
+            releaser.releaseBitmap(oriBitmap);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.baiwang.imagezoom.graphics;
+
+import android.graphics.Bitmap;
+
+/**
+ * Owner of a shared {@link Bitmap}, notified once a drawable stops using it
+ *
+ * @see FastBitmapDrawable#FastBitmapDrawable(Bitmap, IBitmapReleaser)
+ */
+public interface IBitmapReleaser {
+
+	void releaseBitmap(Bitmap bitmap);
+}
@@ -0,0 +1,198 @@
+package com.baiwang.imagezoom.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.baiwang.imagezoom.tiles.IRegionDecoder;
+import com.baiwang.imagezoom.tiles.Tile;
+import com.baiwang.imagezoom.tiles.TileGrid;
+import com.baiwang.imagezoom.tiles.TileManager;
+import com.baiwang.imagezoom.utils.IDisposable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Drawable for images too big to be decoded at once.<br />
+ * A coarse base layer is drawn first, then the tiles for the visible part of the
+ * image are decoded in background at the sample size the current scale calls for.
+ * The owner view must report every matrix change using {@link #setViewport(Matrix, int, int)}.
+ */
+public class TiledBitmapDrawable extends Drawable implements IBitmapDrawable, IDisposable {
+
+    private static final ExecutorService sDecodeExecutor = Executors.newSingleThreadExecutor();
+
+    private final TileManager<Bitmap> mTileManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Paint mPaint;
+    private final int mIntrinsicWidth;
+    private final int mIntrinsicHeight;
+
+    private final Matrix mInverse = new Matrix();
+    private final RectF mVisibleRect = new RectF();
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private final List<Tile<Bitmap>> mMissingTiles = new ArrayList<>();
+    private final List<Tile<Bitmap>> mDrawTiles = new ArrayList<>();
+
+    private final Runnable mInvalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalidateSelf();
+        }
+    };
+
+    /**
+     * @param decoder    the source decoder, owned by this drawable from now on
+     * @param viewWidth  the width of the view, used to pick the base layer size
+     * @param viewHeight the height of the view, used to pick the base layer size
+     */
+    public TiledBitmapDrawable(IRegionDecoder<Bitmap> decoder, int viewWidth, int viewHeight) {
+        mIntrinsicWidth = decoder.getWidth();
+        mIntrinsicHeight = decoder.getHeight();
+
+        float fitScale = Math.min((float) viewWidth / mIntrinsicWidth, (float) viewHeight / mIntrinsicHeight);
+        mTileManager = new TileManager<>(decoder, TileGrid.DEFAULT_TILE_SIZE, TileGrid.computeSampleSize(fitScale));
+
+        mPaint = new Paint();
+        mPaint.setDither(true);
+        mPaint.setAntiAlias(true);
+        mPaint.setFilterBitmap(true);
+
+        sDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mTileManager.decodeBase()) {
+                    mHandler.post(mInvalidateRunnable);
+                }
+            }
+        });
+    }
+
+    /**
+     * Update the visible part of the image
+     *
+     * @param matrix     the matrix mapping drawable coordinates to view coordinates
+     * @param viewWidth
+     * @param viewHeight
+     */
+    public void setViewport(Matrix matrix, int viewWidth, int viewHeight) {
+        if (viewWidth <= 0 || viewHeight <= 0 || !matrix.invert(mInverse)) return;
+
+        mVisibleRect.set(0, 0, viewWidth, viewHeight);
+        mInverse.mapRect(mVisibleRect);
+        if (!mVisibleRect.intersect(0, 0, mIntrinsicWidth, mIntrinsicHeight)) {
+            mVisibleRect.setEmpty();
+        }
+
+        mTileManager.update(mVisibleRect.left, mVisibleRect.top, mVisibleRect.right, mVisibleRect.bottom,
+                matrix.mapRadius(1f), mMissingTiles);
+
+        for (int i = 0; i < mMissingTiles.size(); i++) {
+            final Tile<Bitmap> tile = mMissingTiles.get(i);
+            sDecodeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTileManager.decodeTile(tile)) {
+                        mHandler.post(mInvalidateRunnable);
+                    }
+                }
+            });
+        }
+        mMissingTiles.clear();
+    }
+
+    /**
+     * Release the decoded tiles, the base layer is kept.
+     * The next {@link #setViewport(Matrix, int, int)} decodes the visible ones again.
+     */
+    public void trimMemory() {
+        mTileManager.trimMemory();
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Bitmap base = mTileManager.getBase();
+        if (base != null && !base.isRecycled()) {
+            mSrcRect.set(0, 0, base.getWidth(), base.getHeight());
+            mDstRect.set(0, 0, mIntrinsicWidth, mIntrinsicHeight);
+            canvas.drawBitmap(base, mSrcRect, mDstRect, mPaint);
+        }
+
+        mTileManager.getReadyTiles(mDrawTiles);
+        for (int i = 0; i < mDrawTiles.size(); i++) {
+            Tile<Bitmap> tile = mDrawTiles.get(i);
+            Bitmap bitmap = tile.getRegion();
+            if (bitmap == null || bitmap.isRecycled()) continue;
+            mSrcRect.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            mDstRect.set(tile.getLeft(), tile.getTop(), tile.getRight(), tile.getBottom());
+            canvas.drawBitmap(bitmap, mSrcRect, mDstRect, mPaint);
+        }
+        mDrawTiles.clear();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicHeight;
+    }
+
+    @Override
+    public int getMinimumWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getMinimumHeight() {
+        return mIntrinsicHeight;
+    }
+
+    /**
+     * @return the base layer, subsampled to roughly the view size
+     */
+    @Override
+    public Bitmap getBitmap() {
+        return mTileManager.getBase();
+    }
+
+    public Paint getPaint() {
+        return mPaint;
+    }
+
+    @Override
+    public void dispose() {
+        mHandler.removeCallbacks(mInvalidateRunnable);
+        mTileManager.recycle();
+    }
+}
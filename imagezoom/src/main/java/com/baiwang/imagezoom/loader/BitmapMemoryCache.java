@@ -0,0 +1,274 @@
+package com.baiwang.imagezoom.loader;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.baiwang.imagezoom.graphics.IBitmapReleaser;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide LRU cache of decoded bitmaps, bounded by their allocation size.<br />
+ * Bitmaps handed out by {@link #acquire(String)} or {@link #put(String, Bitmap, boolean)} are
+ * reference counted and never evicted until released with {@link #releaseBitmap(Bitmap)}: the
+ * cache size can temporarily exceed the max size when more than that is on screen.
+ */
+public class BitmapMemoryCache implements IBitmapReleaser {
+
+    private static final int MAX_SOURCE_SIZES = 512;
+
+    private static BitmapMemoryCache sInstance;
+
+    private static class Entry {
+        final String key;
+        final Bitmap bitmap;
+        final int size;
+        int refCount;
+        boolean evicted;
+
+        Entry(String key, Bitmap bitmap) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.size = getBitmapSize(bitmap);
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final IdentityHashMap<Bitmap, Entry> mAcquired = new IdentityHashMap<>();
+    private final LinkedHashMap<String, int[]> mSourceSizes = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > MAX_SOURCE_SIZES;
+        }
+    };
+
+    private final BitmapPool mBitmapPool;
+
+    private long mMaxSize;
+    private long mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * @return the cache shared by all the views, sized to 1/8 of the max heap,
+     * giving its evicted bitmaps to {@link BitmapPool#getInstance()}
+     */
+    public static synchronized BitmapMemoryCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapMemoryCache(Runtime.getRuntime().maxMemory() / 8, BitmapPool.getInstance());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxSize max size, in bytes, of the bitmaps not in use
+     */
+    public BitmapMemoryCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize    max size, in bytes, of the bitmaps not in use
+     * @param bitmapPool receives the bitmaps once evicted and released, can be null
+     */
+    public BitmapMemoryCache(long maxSize, BitmapPool bitmapPool) {
+        mMaxSize = maxSize;
+        mBitmapPool = bitmapPool;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    public static String getKey(ImageSource source, int sampleSize, int targetDensity) {
+        return targetDensity > 0 ? source.getKey() + "#" + sampleSize + "@" + targetDensity : source.getKey() + "#" + sampleSize;
+    }
+
+    /**
+     * Return the cached bitmap for the given key, taking a reference on it.
+     * The caller must call {@link #releaseBitmap(Bitmap)} when done.
+     *
+     * @param key
+     * @return the bitmap or null on a miss
+     */
+    public synchronized Bitmap acquire(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.bitmap.isRecycled()) {
+            if (entry != null) remove(entry);
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        entry.refCount++;
+        mAcquired.put(entry.bitmap, entry);
+        return entry.bitmap;
+    }
+
+    /**
+     * Add a bitmap to the cache
+     *
+     * @param key
+     * @param bitmap
+     * @param acquire true to take a reference on the bitmap, see {@link #acquire(String)}
+     */
+    public synchronized void put(String key, Bitmap bitmap, boolean acquire) {
+        Entry previous = mEntries.get(key);
+        if (previous != null && previous.bitmap != bitmap) {
+            remove(previous);
+        }
+
+        Entry entry = previous != null && previous.bitmap == bitmap ? previous : new Entry(key, bitmap);
+        if (entry != previous) {
+            mEntries.put(key, entry);
+            mSize += entry.size;
+        }
+        if (acquire) {
+            entry.refCount++;
+            mAcquired.put(bitmap, entry);
+        }
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Release a reference taken with {@link #acquire(String)} or {@link #put(String, Bitmap, boolean)}
+     */
+    @Override
+    public synchronized void releaseBitmap(Bitmap bitmap) {
+        Entry entry = mAcquired.get(bitmap);
+        if (entry == null) return;
+        if (--entry.refCount <= 0) {
+            entry.refCount = 0;
+            mAcquired.remove(bitmap);
+            if (entry.evicted) {
+                onEntryRemoved(entry.key, entry.bitmap);
+            }
+        }
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Take one more reference on a bitmap already in use, without counting a cache hit
+     *
+     * @return false if the bitmap is not in use through this cache
+     */
+    public synchronized boolean retain(Bitmap bitmap) {
+        Entry entry = mAcquired.get(bitmap);
+        if (entry == null) return false;
+        entry.refCount++;
+        return true;
+    }
+
+    /**
+     * @return true if the given bitmap is currently referenced through this cache
+     */
+    public synchronized boolean isInUse(Bitmap bitmap) {
+        return mAcquired.containsKey(bitmap);
+    }
+
+    /**
+     * Remember the size of a source, so later lookups can compute the sample size without reading it
+     */
+    public synchronized void putSourceSize(ImageSource source, int width, int height) {
+        mSourceSizes.put(source.getKey(), new int[]{width, height});
+    }
+
+    /**
+     * @return the source {width, height} or null if unknown
+     */
+    public synchronized int[] getSourceSize(ImageSource source) {
+        return mSourceSizes.get(source.getKey());
+    }
+
+    /**
+     * Evict the least recently used bitmaps not in use until the cache is not bigger than the given size
+     *
+     * @param maxSize in bytes
+     */
+    public synchronized void trimToSize(long maxSize) {
+        if (mSize <= maxSize) return;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refCount > 0) continue;
+            iterator.remove();
+            mSize -= entry.size;
+            mEvictionCount++;
+            entry.evicted = true;
+            onEntryRemoved(entry.key, entry.bitmap);
+        }
+    }
+
+    public synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return the allocation size, in bytes, of all the cached bitmaps, including the ones in use
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Called, with the cache lock held, when a bitmap leaves the cache and is not in use anymore.
+     * The bitmap is given to the pool, if any.
+     *
+     * @param key
+     * @param bitmap
+     */
+    protected void onEntryRemoved(String key, Bitmap bitmap) {
+        if (mBitmapPool != null) {
+            mBitmapPool.put(bitmap);
+        }
+    }
+
+    private void remove(Entry entry) {
+        mEntries.remove(entry.key);
+        mSize -= entry.size;
+        entry.evicted = true;
+        if (entry.refCount <= 0) {
+            onEntryRemoved(entry.key, entry.bitmap);
+        }
+    }
+
+    static int getBitmapSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return "BitmapMemoryCache[size=" + mSize + ", maxSize=" + mMaxSize + ", hits=" + mHitCount
+                + ", misses=" + mMissCount + ", evictions=" + mEvictionCount + ", hitRate=" + hitPercent + "%]";
+    }
+}
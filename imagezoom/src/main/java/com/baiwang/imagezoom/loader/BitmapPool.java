@@ -0,0 +1,210 @@
+package com.baiwang.imagezoom.loader;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of bitmaps no longer displayed, reused as {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * by the next decodes.<br />
+ * Bitmaps are bucketed by config and allocation size. A request is served by the smallest pooled
+ * bitmap big enough for it, as long as it is not more than {@link #MAX_SIZE_MULTIPLE} times bigger.
+ * Only bitmaps nobody draws anymore must be put here: {@link BitmapMemoryCache} and {@link ImageLoader}
+ * only do so once the last reference is released. Pooled bitmaps are never recycled, evicted ones are
+ * simply left to the garbage collector.
+ */
+public class BitmapPool {
+
+    /**
+     * Max ratio between the size of a reused bitmap and the size actually needed
+     */
+    static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static BitmapPool sInstance;
+
+    private final Map<Bitmap.Config, TreeMap<Integer, ArrayDeque<Bitmap>>> mBuckets = new EnumMap<>(Bitmap.Config.class);
+    private final IdentityHashMap<Bitmap, Integer> mPooled = new IdentityHashMap<>();
+    // least recently pooled first
+    private final ArrayDeque<Bitmap> mOrder = new ArrayDeque<>();
+
+    private long mMaxSize;
+    private long mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * @return the pool shared by all the views, sized to 1/16 of the max heap
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxSize max size, in bytes, of the pooled bitmaps
+     */
+    public BitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Bitmaps can be reused for a different size only since KitKat
+     */
+    public static boolean isReuseSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Give a bitmap to the pool. The caller must not use it anymore.
+     *
+     * @param bitmap
+     * @return true if the bitmap has been pooled
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null
+                || !isReuseSupported() || mPooled.containsKey(bitmap)) {
+            return false;
+        }
+        final int size = BitmapMemoryCache.getBitmapSize(bitmap);
+        if (size > mMaxSize) return false;
+
+        getBucket(bitmap.getConfig(), size, true).addLast(bitmap);
+        mPooled.put(bitmap, size);
+        mOrder.addLast(bitmap);
+        mSize += size;
+        mPutCount++;
+
+        trimToSize(mMaxSize);
+        return true;
+    }
+
+    /**
+     * Take a bitmap which can be reused to decode an image of the given size
+     *
+     * @param width  decoded width
+     * @param height decoded height
+     * @param config decoded config
+     * @return a bitmap to use as inBitmap, or null
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (config == null || width <= 0 || height <= 0) return null;
+
+        final long required = (long) width * height * getBytesPerPixel(config);
+        final TreeMap<Integer, ArrayDeque<Bitmap>> sizes = mBuckets.get(config);
+        if (sizes == null || required > Integer.MAX_VALUE) {
+            mMissCount++;
+            return null;
+        }
+
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = sizes.ceilingEntry((int) required);
+        if (entry == null || entry.getKey() > required * MAX_SIZE_MULTIPLE) {
+            mMissCount++;
+            return null;
+        }
+
+        Bitmap bitmap = entry.getValue().pollLast();
+        if (entry.getValue().isEmpty()) sizes.remove(entry.getKey());
+        mOrder.removeFirstOccurrence(bitmap);
+        mSize -= mPooled.remove(bitmap);
+        mHitCount++;
+        return bitmap;
+    }
+
+    /**
+     * Drop the least recently pooled bitmaps until the pool is not bigger than the given size
+     *
+     * @param maxSize in bytes
+     */
+    public synchronized void trimToSize(long maxSize) {
+        while (mSize > maxSize && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.pollFirst();
+            int size = mPooled.remove(bitmap);
+            ArrayDeque<Bitmap> bucket = getBucket(bitmap.getConfig(), size, false);
+            if (bucket != null) {
+                bucket.removeFirstOccurrence(bitmap);
+                if (bucket.isEmpty()) mBuckets.get(bitmap.getConfig()).remove(size);
+            }
+            mSize -= size;
+            mEvictionCount++;
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private ArrayDeque<Bitmap> getBucket(Bitmap.Config config, int size, boolean create) {
+        TreeMap<Integer, ArrayDeque<Bitmap>> sizes = mBuckets.get(config);
+        if (sizes == null) {
+            if (!create) return null;
+            sizes = new TreeMap<>();
+            mBuckets.put(config, sizes);
+        }
+        ArrayDeque<Bitmap> bucket = sizes.get(size);
+        if (bucket == null && create) {
+            bucket = new ArrayDeque<>();
+            sizes.put(size, bucket);
+        }
+        return bucket;
+    }
+
+    static int getBytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            case RGBA_F16:
+                return 8;
+            case ARGB_8888:
+            default:
+                return 4;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool[size=" + mSize + ", maxSize=" + mMaxSize + ", hits=" + mHitCount
+                + ", misses=" + mMissCount + ", puts=" + mPutCount + ", evictions=" + mEvictionCount + "]";
+    }
+}
@@ -0,0 +1,72 @@
+package com.baiwang.imagezoom.loader;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * Bitmap config of the {@link ImageLoader} decodes, see {@link ImageLoader#setDecodeFormat(DecodeFormat)}
+ */
+public enum DecodeFormat {
+
+    /**
+     * Always ARGB_8888, the platform default
+     */
+    ARGB_8888,
+
+    /**
+     * RGB_565 for opaque images, half the memory of ARGB_8888 at the cost of some banding
+     * in smooth gradients, ARGB_8888 for images which may have alpha
+     */
+    PREFER_RGB_565,
+
+    /**
+     * HARDWARE on API 26+: the pixels only live in graphics memory, nothing on the Java heap.
+     * Hardware bitmaps are immutable, are never reused by the {@link BitmapPool} and can't be
+     * drawn on a software canvas: only use it for hardware accelerated views which don't
+     * read the pixels back. Same as {@link #PREFER_RGB_565} below API 26.
+     */
+    AUTO;
+
+    /**
+     * @param mimeType the {@link android.graphics.BitmapFactory.Options#outMimeType} of the image, null if unknown
+     * @return the config to decode the image with
+     */
+    Bitmap.Config getConfig(String mimeType) {
+        return getConfig(isOpaque(mimeType));
+    }
+
+    /**
+     * @param opaque true if the image is known to have no alpha
+     * @return the config to decode the image with
+     */
+    Bitmap.Config getConfig(boolean opaque) {
+        if (this == AUTO && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return Bitmap.Config.HARDWARE;
+        }
+        if (this != ARGB_8888 && opaque) {
+            return Bitmap.Config.RGB_565;
+        }
+        return Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * @return true if the config depends on the image metadata, read with the bounds
+     */
+    boolean needsMimeType() {
+        return getConfig(true) != getConfig(false);
+    }
+
+    /**
+     * @return true if the images of this type never have alpha
+     */
+    static boolean isOpaque(String mimeType) {
+        return "image/jpeg".equals(mimeType);
+    }
+
+    /**
+     * @return true if the decodes are hardware bitmaps, which can't reuse pooled bitmaps
+     */
+    boolean isHardware() {
+        return this == AUTO && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+}
@@ -0,0 +1,94 @@
+package com.baiwang.imagezoom.loader;
+
+import com.baiwang.imagezoom.math.ZoomState.Fit;
+
+/**
+ * Immutable snapshot of the view state which defines how much resolution a decode needs.
+ *
+ * @see SampleSizeCalculator
+ */
+public final class DecodeSpec {
+
+    /**
+     * Same ratio used by the view to compute its default max zoom
+     */
+    static final float DEFAULT_MAX_ZOOM_FACTOR = 8f;
+
+    private final int mViewWidth;
+    private final int mViewHeight;
+    private final Fit mFit;
+    private final float mMaxZoom;
+    private final float mMaxDecodeZoom;
+
+    /**
+     * @param viewWidth     the view width
+     * @param viewHeight    the view height
+     * @param fit           the fit of the view, matching its display type
+     * @param maxZoom       the view max zoom, or a value <= 0 if the view computes it from the image size
+     * @param maxDecodeZoom the zoom above which the image is allowed to be upscaled
+     */
+    public DecodeSpec(int viewWidth, int viewHeight, Fit fit, float maxZoom, float maxDecodeZoom) {
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mFit = fit;
+        mMaxZoom = maxZoom;
+        mMaxDecodeZoom = maxDecodeZoom;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    /**
+     * The highest zoom, relative to fit-to-view, the decoded image must support without upscaling
+     */
+    public float getRequiredZoom(int srcWidth, int srcHeight) {
+        float fit = Math.min((float) mViewWidth / srcWidth, (float) mViewHeight / srcHeight);
+
+        float defaultZoom;
+        switch (mFit) {
+            case FIT_IF_BIGGER:
+                defaultZoom = Math.min(1f, 1f / fit);
+                break;
+            case FILL_TO_SCREEN:
+                float ratio = (float) srcWidth / srcHeight;
+                defaultZoom = ratio < 1f ? 1f / ratio : ratio;
+                break;
+            case NONE:
+                defaultZoom = 1f / fit;
+                break;
+            case FIT_TO_SCREEN:
+            default:
+                defaultZoom = 1f;
+                break;
+        }
+
+        float maxZoom = mMaxZoom > 0 ? mMaxZoom
+                : Math.max((float) srcWidth / mViewWidth, (float) srcHeight / mViewHeight) * DEFAULT_MAX_ZOOM_FACTOR;
+        return Math.max(defaultZoom, Math.min(maxZoom, mMaxDecodeZoom));
+    }
+
+    /**
+     * @return the scale, relative to the source, the image should be decoded at
+     */
+    public float getDecodeScale(int srcWidth, int srcHeight) {
+        return SampleSizeCalculator.computeDecodeScale(srcWidth, srcHeight, mViewWidth, mViewHeight,
+                getRequiredZoom(srcWidth, srcHeight));
+    }
+
+    public int getSampleSize(int srcWidth, int srcHeight) {
+        return SampleSizeCalculator.computeSampleSize(getDecodeScale(srcWidth, srcHeight));
+    }
+
+    /**
+     * @return a key identifying the decodes made with this spec: the same source decoded
+     * with two specs having the same key gives the same bitmap
+     */
+    public String getKey() {
+        return mViewWidth + "x" + mViewHeight + "/" + mFit + "/" + mMaxZoom + "/" + mMaxDecodeZoom;
+    }
+}
@@ -0,0 +1,544 @@
+package com.baiwang.imagezoom.loader;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded, LRU, on disk cache of encoded images.<br />
+ * Every operation is appended to a journal before the files are touched, so an entry
+ * interrupted by a crash (DIRTY without a following CLEAN) is discarded on the next open.
+ * The journal is compacted once it holds too many redundant lines.<br />
+ * Journal format, one operation per line:
+ *
+ * <pre>
+ * imagezoom.DiskCache
+ * 1
+ *
+ * DIRTY 1b2c...
+ * CLEAN 1b2c... 183042 4000,3000,2,0,2000,1500
+ * READ 1b2c...
+ * REMOVE 1b2c...
+ * </pre>
+ */
+public class DiskCache {
+
+    static final String JOURNAL_FILE = "journal";
+    static final String JOURNAL_FILE_TMP = "journal.tmp";
+    static final String MAGIC = "imagezoom.DiskCache";
+    static final String VERSION = "1";
+
+    private static final String CLEAN = "CLEAN";
+    private static final String DIRTY = "DIRTY";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static DiskCache sInstance;
+
+    /**
+     * Writes the content of a new entry
+     */
+    public interface Writer {
+
+        void write(OutputStream os) throws IOException;
+    }
+
+    /**
+     * A readable entry
+     */
+    public static class Snapshot {
+
+        private final File mFile;
+        private final String mMetadata;
+
+        Snapshot(File file, String metadata) {
+            mFile = file;
+            mMetadata = metadata;
+        }
+
+        public File getFile() {
+            return mFile;
+        }
+
+        /**
+         * @return the metadata given to {@link DiskCache#put(String, String, Writer)}
+         */
+        public String getMetadata() {
+            return mMetadata;
+        }
+
+        /**
+         * Open the entry, memory mapped when possible
+         *
+         * @return
+         * @throws IOException if the entry has been evicted in the meantime
+         */
+        public InputStream openStream() throws IOException {
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                return new ByteBufferInputStream(buffer);
+            } catch (IOException e) {
+                return new BufferedInputStream(new FileInputStream(mFile), 16 * 1024);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        long length;
+        String metadata = "";
+        boolean readable;
+        boolean editing;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    private final File mDirectory;
+    private final File mJournalFile;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mMaxSize;
+    private long mSize;
+    private int mRedundantOpCount;
+    private BufferedWriter mJournalWriter;
+
+    /**
+     * @return the cache shared by all the loaders, in the application cache directory
+     */
+    public static synchronized DiskCache getInstance(Context context) throws IOException {
+        if (sInstance == null) {
+            sInstance = open(new File(context.getApplicationContext().getCacheDir(), "imagezoom"), DEFAULT_MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Open the cache in the given directory, creating it if needed
+     *
+     * @param directory a directory used only by this cache
+     * @param maxSize   max size, in bytes
+     * @return
+     * @throws IOException
+     */
+    public static DiskCache open(File directory, long maxSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        DiskCache cache = new DiskCache(directory, maxSize);
+        try {
+            cache.readJournal();
+        } catch (IOException e) {
+            // corrupted journal, start over
+            cache.deleteContents();
+        }
+        cache.rebuildJournal();
+        return cache;
+    }
+
+    private DiskCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mJournalFile = new File(directory, JOURNAL_FILE);
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @param key any string
+     * @return the entry, or null if missing
+     */
+    public synchronized Snapshot get(String key) {
+        final String hash = hashKey(key);
+        Entry entry = mEntries.get(hash);
+        if (entry == null || !entry.readable) return null;
+
+        File file = getCleanFile(hash);
+        if (!file.exists()) {
+            removeEntry(entry);
+            return null;
+        }
+        appendJournal(READ + ' ' + hash);
+        return new Snapshot(file, entry.metadata);
+    }
+
+    /**
+     * Write a new entry, replacing the existing one if any.
+     * Returns false without writing if the same key is being written by another thread.
+     *
+     * @param key      any string
+     * @param metadata small string stored in the journal, without spaces nor line breaks
+     * @param writer   writes the content
+     * @return true if the entry has been stored
+     * @throws IOException if the writer failed
+     */
+    public boolean put(String key, String metadata, Writer writer) throws IOException {
+        if (metadata.indexOf(' ') >= 0 || metadata.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Invalid metadata: " + metadata);
+        }
+
+        final String hash = hashKey(key);
+        final Entry entry;
+        synchronized (this) {
+            if (mJournalWriter == null) return false;
+            Entry existing = mEntries.get(hash);
+            if (existing != null && existing.editing) return false;
+            entry = existing != null ? existing : new Entry(hash);
+            entry.editing = true;
+            mEntries.put(hash, entry);
+            appendJournal(DIRTY + ' ' + hash);
+        }
+
+        final File dirtyFile = getDirtyFile(hash);
+        boolean success = false;
+        try {
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(dirtyFile), 16 * 1024);
+            try {
+                writer.write(os);
+            } finally {
+                os.close();
+            }
+            success = true;
+        } finally {
+            synchronized (this) {
+                completeEdit(entry, dirtyFile, metadata, success);
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        Entry entry = mEntries.get(hashKey(key));
+        if (entry == null || entry.editing) return false;
+        removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * Evict the least recently used entries until the cache is not bigger than the given size
+     *
+     * @param maxSize in bytes
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        List<Entry> evicted = new ArrayList<>();
+        long size = mSize;
+        while (size > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.editing || !entry.readable) continue;
+            evicted.add(entry);
+            size -= entry.length;
+        }
+        for (Entry entry : evicted) {
+            removeEntry(entry);
+        }
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Close the journal. The cache can't be written anymore.
+     */
+    public synchronized void close() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+            mJournalWriter = null;
+        }
+    }
+
+    private void completeEdit(Entry entry, File dirtyFile, String metadata, boolean success) {
+        entry.editing = false;
+        final File cleanFile = getCleanFile(entry.key);
+
+        if (success && dirtyFile.exists()) {
+            if (cleanFile.exists() && !cleanFile.delete() || !dirtyFile.renameTo(cleanFile)) {
+                success = false;
+            }
+        }
+        if (!success) {
+            //noinspection ResultOfMethodCallIgnored
+            dirtyFile.delete();
+            if (!entry.readable) {
+                mEntries.remove(entry.key);
+                appendJournal(REMOVE + ' ' + entry.key);
+            }
+            return;
+        }
+
+        mSize -= entry.readable ? entry.length : 0;
+        entry.length = cleanFile.length();
+        entry.metadata = metadata;
+        entry.readable = true;
+        mSize += entry.length;
+        appendJournal(CLEAN + ' ' + entry.key + ' ' + entry.length + ' ' + metadata);
+
+        trimToSize(mMaxSize);
+    }
+
+    private void removeEntry(Entry entry) {
+        //noinspection ResultOfMethodCallIgnored
+        getCleanFile(entry.key).delete();
+        if (entry.readable) mSize -= entry.length;
+        mEntries.remove(entry.key);
+        appendJournal(REMOVE + ' ' + entry.key);
+    }
+
+    /**
+     * Append an operation to the journal, compacting it if needed
+     */
+    private void appendJournal(String line) {
+        if (mJournalWriter == null) return;
+        try {
+            mJournalWriter.write(line);
+            mJournalWriter.write('\n');
+            mJournalWriter.flush();
+            if (++mRedundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && mRedundantOpCount >= mEntries.size()) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            // stop journaling, the cache becomes read only
+            try {
+                mJournalWriter.close();
+            } catch (IOException ignored) {
+            }
+            mJournalWriter = null;
+        }
+    }
+
+    private void readJournal() throws IOException {
+        if (!mJournalFile.exists()) return;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mJournalFile), UTF_8));
+        try {
+            if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine()) || !"".equals(reader.readLine())) {
+                throw new IOException("Unexpected journal header");
+            }
+            // a last line without terminator has been truncated by a crash
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    processJournalLine(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        // entries still dirty have been interrupted
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            //noinspection ResultOfMethodCallIgnored
+            getDirtyFile(entry.key).delete();
+            if (entry.editing || !entry.readable || !getCleanFile(entry.key).exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                getCleanFile(entry.key).delete();
+                if (entry.readable) mSize -= entry.length;
+                iterator.remove();
+            }
+            entry.editing = false;
+        }
+    }
+
+    private void processJournalLine(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length < 2) return;
+
+        final String op = parts[0];
+        final String key = parts[1];
+        Entry entry = mEntries.get(key);
+
+        if (REMOVE.equals(op)) {
+            if (entry != null && entry.readable) mSize -= entry.length;
+            mEntries.remove(key);
+        } else if (DIRTY.equals(op)) {
+            if (entry == null) {
+                entry = new Entry(key);
+                mEntries.put(key, entry);
+            }
+            entry.editing = true;
+        } else if (CLEAN.equals(op) && parts.length >= 3) {
+            if (entry == null) {
+                entry = new Entry(key);
+                mEntries.put(key, entry);
+            }
+            try {
+                long length = Long.parseLong(parts[2]);
+                if (entry.readable) mSize -= entry.length;
+                entry.length = length;
+                entry.metadata = parts.length > 3 ? parts[3] : "";
+                entry.readable = true;
+                entry.editing = false;
+                mSize += length;
+            } catch (NumberFormatException e) {
+                // corrupted line, the entry stays dirty
+            }
+        } else if (READ.equals(op)) {
+            // the lookup already moved the entry to the end of the access order
+        }
+        mRedundantOpCount++;
+    }
+
+    /**
+     * Write a compact journal with one line per entry, and atomically replace the current one
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+        }
+
+        File tmp = new File(mDirectory, JOURNAL_FILE_TMP);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), UTF_8));
+        try {
+            writer.write(MAGIC + "\n" + VERSION + "\n\n");
+            for (Entry entry : mEntries.values()) {
+                if (entry.editing) {
+                    writer.write(DIRTY + ' ' + entry.key + '\n');
+                } else if (entry.readable) {
+                    writer.write(CLEAN + ' ' + entry.key + ' ' + entry.length + ' ' + entry.metadata + '\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(mJournalFile)) {
+            throw new IOException("Unable to replace " + mJournalFile);
+        }
+
+        mRedundantOpCount = 0;
+        mJournalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mJournalFile, true), UTF_8));
+    }
+
+    private void deleteContents() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    private File getCleanFile(String hash) {
+        return new File(mDirectory, hash);
+    }
+
+    private File getDirtyFile(String hash) {
+        return new File(mDirectory, hash + ".tmp");
+    }
+
+    static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(UTF_8));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(key.hashCode() & 0xffffffffL);
+        }
+    }
+
+    /**
+     * Stream over a memory mapped entry
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!mBuffer.hasRemaining()) return -1;
+            len = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+            mBuffer.position(mBuffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mBuffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            mBuffer.reset();
+        }
+    }
+}
@@ -0,0 +1,805 @@
+package com.baiwang.imagezoom.loader;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.baiwang.imagezoom.graphics.IBitmapReleaser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes images on a bounded pool of background threads and delivers
+ * the result on the main thread.<br />
+ * Every call to {@link #load(ImageSource, Callback)} returns a {@link Task}
+ * which can be cancelled at any time: a cancelled task never invokes its callback,
+ * and a decode already in progress is aborted at the next read of the encoded stream.<br />
+ * When a {@link BitmapMemoryCache} is set, cached bitmaps are delivered without decoding.
+ * Every delivered bitmap then holds a cache reference: give it back with
+ * {@link #releaseBitmap(Bitmap)}, e.g. by wrapping it in a
+ * {@link com.baiwang.imagezoom.graphics.FastBitmapDrawable} using this loader as releaser.
+ * Loads of an image already being decoded with the same sample size or {@link DecodeSpec},
+ * e.g. a prefetch and the actual load, then share that decode.<br />
+ * When a {@link BitmapPool} is set, decodes reuse pooled bitmaps and released bitmaps go back
+ * to the pool, through the cache if any, once nobody references them anymore.<br />
+ * When a {@link DiskCache} is set, sampled decodes are stored on disk re-encoded at their
+ * decoded size, and later decodes of the same source for the same {@link DecodeSpec} read
+ * that small derivative instead of the original.<br />
+ * The bitmap config follows the {@link DecodeFormat}, ARGB_8888 by default.<br />
+ * On memory pressure the memory cache and the pool shrink, see {@link #onTrimMemory(int)}:
+ * the image views forward their trim events to their loader, it can also be registered
+ * with {@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)}.
+ */
+public class ImageLoader implements IBitmapReleaser, ComponentCallbacks2 {
+
+    /**
+     * Result callback, always invoked on the main thread
+     */
+    public interface Callback {
+
+        void onImageLoaded(Bitmap bitmap);
+
+        void onImageLoadFailed(Throwable error);
+    }
+
+    /**
+     * Where a delivered bitmap comes from, see {@link Task#getLoadedFrom()}
+     */
+    public enum LoadedFrom {
+        MEMORY_CACHE, DISK_CACHE, SOURCE
+    }
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Reference density used to express the fine scaling applied after subsampling
+     */
+    private static final int DENSITY_BASE = 1000;
+
+    /**
+     * Quality of the derivatives stored in the disk cache
+     */
+    private static final int DERIVATIVE_QUALITY = 90;
+
+    private static ImageLoader sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final BitmapMemoryCache mMemoryCache;
+    private final BitmapPool mBitmapPool;
+    // decodes in progress by request key, see Task#getRequestKey
+    private final HashMap<String, Task> mRunning = new HashMap<>();
+    private volatile DiskCache mDiskCache;
+    private volatile DecodeFormat mDecodeFormat = DecodeFormat.ARGB_8888;
+
+    /**
+     * @return the process wide loader
+     */
+    public static synchronized ImageLoader getInstance() {
+        if (sInstance == null) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            BitmapMemoryCache cache = BitmapMemoryCache.getInstance();
+            sInstance = new ImageLoader(Math.max(2, Math.min(4, cpus - 1)), cache, cache.getBitmapPool());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param poolSize max number of concurrent decodes
+     */
+    public ImageLoader(int poolSize) {
+        this(poolSize, null, null);
+    }
+
+    /**
+     * @param poolSize    max number of concurrent decodes
+     * @param memoryCache the cache to use, null to always decode
+     * @param bitmapPool  the pool to reuse bitmaps from, null to always allocate.
+     *                    When a cache is used, it should release its bitmaps to the same pool.
+     */
+    public ImageLoader(int poolSize, BitmapMemoryCache memoryCache, BitmapPool bitmapPool) {
+        mMemoryCache = memoryCache;
+        mBitmapPool = bitmapPool;
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DecodeThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Load the given source in background
+     *
+     * @param source   the image to decode
+     * @param callback receives the result on the main thread
+     * @return the task, use it to cancel the request
+     */
+    public Task load(ImageSource source, Callback callback) {
+        return load(source, 1, callback);
+    }
+
+    /**
+     * Load a subsampled version of the given source in background
+     *
+     * @param source     the image to decode
+     * @param sampleSize the {@link BitmapFactory.Options#inSampleSize} to use
+     * @param callback   receives the result on the main thread
+     * @return the task, use it to cancel the request
+     */
+    public Task load(ImageSource source, int sampleSize, Callback callback) {
+        return submit(new Task(source, sampleSize, null, callback));
+    }
+
+    /**
+     * Load the given source in background, decoding it only as big as the given spec requires.
+     * The image bounds are read first to pick the sample size.
+     *
+     * @param source   the image to decode
+     * @param spec     the view state the image is decoded for
+     * @param callback receives the result on the main thread
+     * @return the task, use it to cancel the request
+     */
+    public Task load(ImageSource source, DecodeSpec spec, Callback callback) {
+        return submit(new Task(source, 1, spec, callback));
+    }
+
+    public BitmapMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Set the disk cache used to store the sampled decodes, null to disable it
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    public DiskCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * Set how the bitmap config of the decodes is chosen. Set it before the first load:
+     * the bitmaps already in the memory cache keep their config.
+     */
+    public void setDecodeFormat(DecodeFormat format) {
+        mDecodeFormat = format != null ? format : DecodeFormat.ARGB_8888;
+    }
+
+    public DecodeFormat getDecodeFormat() {
+        return mDecodeFormat;
+    }
+
+    /**
+     * Release a bitmap delivered by this loader
+     */
+    @Override
+    public void releaseBitmap(Bitmap bitmap) {
+        if (mMemoryCache != null) {
+            mMemoryCache.releaseBitmap(bitmap);
+        } else if (mBitmapPool != null) {
+            mBitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * Evict the unreferenced bitmaps of the memory cache, then of the pool, down to a share of
+     * their max size depending on the level. Trimming to a share of the max size, several
+     * callers can forward the same event.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        final float keep = getTrimRatio(level);
+        if (keep >= 1f) return;
+
+        // the cache evicts into the pool, trim it first
+        if (mMemoryCache != null) {
+            mMemoryCache.trimToSize((long) (mMemoryCache.getMaxSize() * keep));
+        }
+        if (mBitmapPool != null) {
+            mBitmapPool.trimToSize((long) (mBitmapPool.getMaxSize() * keep));
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * @return the share of their max size the caches keep at the given trim level
+     */
+    static float getTrimRatio(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // next in line to be killed in background
+            return 0f;
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            return 0.25f;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f;
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            // in foreground, the system is about to kill the background processes
+            return 0f;
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        }
+        return 1f;
+    }
+
+    private Task submit(final Task task) {
+        if (mMemoryCache != null) {
+            final Bitmap cached = acquireCached(task);
+            if (cached != null) {
+                task.mFromMemoryCache = true;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.deliver(cached, null);
+                    }
+                });
+                return task;
+            }
+            // the same image is being decoded already, e.g. prefetched: wait for that decode
+            synchronized (mRunning) {
+                final Task running = mRunning.get(task.getRequestKey());
+                if (running != null) {
+                    running.addFollower(task);
+                    return task;
+                }
+                mRunning.put(task.getRequestKey(), task);
+            }
+        }
+        task.mFuture = mExecutor.submit(task);
+        return task;
+    }
+
+    /**
+     * Lookup the memory cache without any I/O. Sampled requests can only be resolved
+     * if the source size has been seen before.
+     */
+    private Bitmap acquireCached(Task task) {
+        final DecodeSpec spec = task.getDecodeSpec();
+        if (spec != null) {
+            int[] size = mMemoryCache.getSourceSize(task.getSource());
+            if (size == null) return null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            applyDecodeSpec(spec, size[0], size[1], options);
+            task.mSourceWidth = size[0];
+            task.mSourceHeight = size[1];
+            task.mSampleSize = options.inSampleSize;
+            task.mTargetDensity = options.inScaled ? options.inTargetDensity : 0;
+        }
+        return mMemoryCache.acquire(BitmapMemoryCache.getKey(task.getSource(), task.mSampleSize, task.mTargetDensity));
+    }
+
+    /**
+     * Setup the sample size, and the density scaling if needed, for the given spec
+     */
+    private static void applyDecodeSpec(DecodeSpec spec, int srcWidth, int srcHeight, BitmapFactory.Options options) {
+        float decodeScale = spec.getDecodeScale(srcWidth, srcHeight);
+        options.inSampleSize = SampleSizeCalculator.computeSampleSize(decodeScale);
+
+        float densityScale = SampleSizeCalculator.computeDensityScale(decodeScale, options.inSampleSize);
+        if (densityScale < 1f) {
+            options.inScaled = true;
+            options.inDensity = DENSITY_BASE;
+            options.inTargetDensity = Math.max(1, Math.round(DENSITY_BASE * densityScale));
+        }
+    }
+
+    /**
+     * Decode the source. Invoked on a worker thread.
+     *
+     * @param source
+     * @param task   the running task, see {@link Task#isAborted()}
+     * @return the decoded bitmap, never null
+     * @throws IOException if the source can't be read or decoded
+     */
+    protected Bitmap decode(ImageSource source, Task task) throws IOException {
+        final DecodeSpec spec = task.getDecodeSpec();
+        final DecodeFormat format = mDecodeFormat;
+        // hardware bitmaps are immutable, they can't be decoded into a pooled bitmap
+        final boolean reuse = mBitmapPool != null && BitmapPool.isReuseSupported() && !format.isHardware();
+
+        final DiskCache diskCache = mDiskCache;
+        if (spec != null && diskCache != null) {
+            Bitmap bitmap = decodeDerivative(diskCache, source, spec, task, format, reuse);
+            if (bitmap != null) return bitmap;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = task.getSampleSize();
+
+        if (spec != null || reuse || format.needsMimeType()) {
+            decodeBounds(source, task, options);
+        }
+        if (spec != null) {
+            applyDecodeSpec(spec, options.outWidth, options.outHeight, options);
+            task.mTargetDensity = options.inScaled ? options.inTargetDensity : 0;
+        }
+        options.inPreferredConfig = format.getConfig(options.outMimeType);
+        if (reuse) {
+            options.inMutable = true;
+            options.inBitmap = mBitmapPool.get(
+                    getDecodedSize(options.outWidth, options),
+                    getDecodedSize(options.outHeight, options),
+                    options.inPreferredConfig);
+        }
+        task.mSampleSize = options.inSampleSize;
+        task.mOptions = options;
+
+        try {
+            return decodeStream(source, task, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) throw e;
+            // the pooled bitmap can't be reused for this image after all
+            options.inBitmap = null;
+            return decodeStream(source, task, options);
+        } finally {
+            task.mOptions = null;
+        }
+    }
+
+    private Bitmap decodeStream(ImageSource source, Task task, BitmapFactory.Options options) throws IOException {
+        return decodeStream(source.openStream(), source, task, options);
+    }
+
+    private Bitmap decodeStream(InputStream stream, ImageSource source, Task task, BitmapFactory.Options options) throws IOException {
+        InputStream is = new CancellableInputStream(stream, task);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
+            if (bitmap == null) {
+                if (task.isAborted()) throw new InterruptedIOException("cancelled");
+                throw new IOException("Unable to decode " + source);
+            }
+            return bitmap;
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String getDerivativeKey(ImageSource source, DecodeSpec spec) {
+        return source.getKey() + "|" + spec.getKey();
+    }
+
+    /**
+     * Decode the derivative of the source from the disk cache
+     *
+     * @return the bitmap, or null if there is no usable derivative
+     */
+    private Bitmap decodeDerivative(DiskCache diskCache, ImageSource source, DecodeSpec spec, Task task,
+                                    DecodeFormat format, boolean reuse) throws IOException {
+        final DiskCache.Snapshot snapshot = diskCache.get(getDerivativeKey(source, spec));
+        if (snapshot == null) return null;
+
+        // srcWidth,srcHeight,sampleSize,targetDensity,width,height[,opaque]
+        final int[] values = new int[7];
+        String[] parts = snapshot.getMetadata().split(",");
+        if (parts.length < values.length - 1 || parts.length > values.length) return null;
+        try {
+            for (int i = 0; i < parts.length; i++) values[i] = Integer.parseInt(parts[i]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // derivatives stored without the opaque flag decode as if they had alpha
+        options.inPreferredConfig = format.getConfig(values[6] == 1);
+        if (reuse) {
+            options.inMutable = true;
+            options.inBitmap = mBitmapPool.get(values[4], values[5], options.inPreferredConfig);
+        }
+        task.mOptions = options;
+
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(snapshot.openStream(), source, task, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) throw e;
+            options.inBitmap = null;
+            bitmap = decodeStream(snapshot.openStream(), source, task, options);
+        } catch (IOException e) {
+            if (task.isAborted()) throw e;
+            // evicted meanwhile or unreadable: decode the original
+            return null;
+        } finally {
+            task.mOptions = null;
+        }
+
+        task.mSourceWidth = values[0];
+        task.mSourceHeight = values[1];
+        task.mSampleSize = values[2];
+        task.mTargetDensity = values[3];
+        task.mFromDiskCache = true;
+        if (mMemoryCache != null) {
+            mMemoryCache.putSourceSize(source, values[0], values[1]);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Store the sampled decode of a task in the disk cache, if it is smaller than the source
+     */
+    private void storeDerivative(Task task, final Bitmap bitmap) {
+        final DiskCache diskCache = mDiskCache;
+        final DecodeSpec spec = task.getDecodeSpec();
+        if (diskCache == null || spec == null || task.mFromDiskCache
+                || (task.mSampleSize <= 1 && task.mTargetDensity == 0)) {
+            return;
+        }
+
+        final String metadata = task.mSourceWidth + "," + task.mSourceHeight + "," + task.mSampleSize + ","
+                + task.mTargetDensity + "," + bitmap.getWidth() + "," + bitmap.getHeight()
+                + "," + (bitmap.hasAlpha() ? 0 : 1);
+        try {
+            diskCache.put(getDerivativeKey(task.getSource(), spec), metadata, new DiskCache.Writer() {
+                @Override
+                public void write(OutputStream os) throws IOException {
+                    Bitmap.CompressFormat format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+                    if (!bitmap.compress(format, DERIVATIVE_QUALITY, os)) {
+                        throw new IOException("Unable to encode " + task.getSource());
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // the derivative is only an optimization
+        }
+    }
+
+    /**
+     * @return the decoded size of a source dimension, after subsampling and density scaling
+     */
+    private static int getDecodedSize(int sourceSize, BitmapFactory.Options options) {
+        int size = (sourceSize + options.inSampleSize - 1) / options.inSampleSize;
+        if (options.inScaled && options.inDensity > 0 && options.inTargetDensity > 0) {
+            size = (int) (size * (float) options.inTargetDensity / options.inDensity + 0.5f);
+        }
+        return size;
+    }
+
+    /**
+     * Read the source size into {@link BitmapFactory.Options#outWidth} and {@link BitmapFactory.Options#outHeight}
+     */
+    private void decodeBounds(ImageSource source, Task task, BitmapFactory.Options options) throws IOException {
+        options.inJustDecodeBounds = true;
+        InputStream is = new CancellableInputStream(source.openStream(), task);
+        try {
+            BitmapFactory.decodeStream(is, null, options);
+        } finally {
+            options.inJustDecodeBounds = false;
+            is.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            if (task.isAborted()) throw new InterruptedIOException("cancelled");
+            throw new IOException("Unable to read the bounds of " + source);
+        }
+        task.mSourceWidth = options.outWidth;
+        task.mSourceHeight = options.outHeight;
+        if (mMemoryCache != null) {
+            mMemoryCache.putSourceSize(source, options.outWidth, options.outHeight);
+        }
+    }
+
+    /**
+     * A pending or running decode
+     */
+    public class Task implements Runnable {
+
+        private final ImageSource mSource;
+        private final DecodeSpec mSpec;
+        private final Callback mCallback;
+        private volatile int mSampleSize;
+        private volatile int mSourceWidth;
+        private volatile int mSourceHeight;
+        private volatile int mTargetDensity;
+        private volatile boolean mFromDiskCache;
+        private volatile boolean mFromMemoryCache;
+        private volatile long mDecodeNanos;
+        private volatile boolean mCancelled;
+        private volatile boolean mAborted;
+        private volatile BitmapFactory.Options mOptions;
+        private volatile Future<?> mFuture;
+        // the task decoding for this one, and the tasks waiting for this decode, guarded by mRunning
+        private Task mLeader;
+        private ArrayList<Task> mFollowers;
+
+        Task(ImageSource source, int sampleSize, DecodeSpec spec, Callback callback) {
+            mSource = source;
+            mSampleSize = Math.max(1, sampleSize);
+            mSpec = spec;
+            mCallback = callback;
+        }
+
+        /**
+         * @return the identity of the decode: two tasks with the same key decode the same bitmap
+         */
+        String getRequestKey() {
+            return mSpec != null ? getDerivativeKey(mSource, mSpec) : mSource.getKey() + "#" + mSampleSize;
+        }
+
+        public ImageSource getSource() {
+            return mSource;
+        }
+
+        /**
+         * @return the decode spec, null for a fixed sample size
+         */
+        public DecodeSpec getDecodeSpec() {
+            return mSpec;
+        }
+
+        /**
+         * @return the sample size, final once the image has been loaded
+         */
+        public int getSampleSize() {
+            return mSampleSize;
+        }
+
+        /**
+         * @return the source width, known once the image has been loaded with a {@link DecodeSpec}
+         */
+        public int getSourceWidth() {
+            return mSourceWidth;
+        }
+
+        /**
+         * @return the source height, known once the image has been loaded with a {@link DecodeSpec}
+         */
+        public int getSourceHeight() {
+            return mSourceHeight;
+        }
+
+        /**
+         * @return where the bitmap came from, final once the image has been loaded
+         */
+        public LoadedFrom getLoadedFrom() {
+            if (mFromMemoryCache) return LoadedFrom.MEMORY_CACHE;
+            return mFromDiskCache ? LoadedFrom.DISK_CACHE : LoadedFrom.SOURCE;
+        }
+
+        /**
+         * @return the time spent decoding, in nanoseconds, 0 for a memory cache hit
+         */
+        public long getDecodeTimeNanos() {
+            return mDecodeNanos;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * @return true once this task and all the tasks sharing its decode are cancelled:
+         * the decode is then aborted
+         */
+        boolean isAborted() {
+            return mAborted;
+        }
+
+        /**
+         * Cancel the request. Must be invoked on the main thread
+         * to guarantee the callback won't be invoked anymore.
+         * The decode goes on as long as other requests share it.
+         */
+        public void cancel() {
+            if (mCancelled) return;
+            mCancelled = true;
+
+            final Task decoding;
+            synchronized (mRunning) {
+                decoding = mLeader != null ? mLeader : this;
+            }
+            decoding.abortIfUnused();
+        }
+
+        private void abortIfUnused() {
+            synchronized (mRunning) {
+                if (!mCancelled || mAborted) return;
+                if (mFollowers != null) {
+                    for (int i = 0; i < mFollowers.size(); i++) {
+                        if (!mFollowers.get(i).mCancelled) return;
+                    }
+                }
+                mAborted = true;
+                if (mRunning.get(getRequestKey()) == this) {
+                    mRunning.remove(getRequestKey());
+                }
+            }
+
+            BitmapFactory.Options options = mOptions;
+            if (options != null) options.requestCancelDecode();
+
+            Future<?> future = mFuture;
+            if (future != null) future.cancel(false);
+        }
+
+        /**
+         * Deliver the result of this decode to the given task as well. Invoked with mRunning held.
+         */
+        private void addFollower(Task task) {
+            if (mFollowers == null) {
+                mFollowers = new ArrayList<>(1);
+            }
+            mFollowers.add(task);
+            task.mLeader = this;
+        }
+
+        @Override
+        public void run() {
+            if (mAborted) return;
+
+            Bitmap bitmap = null;
+            Throwable error = null;
+            boolean retained = false;
+            final long start = System.nanoTime();
+            try {
+                bitmap = decode(mSource, this);
+                mDecodeNanos = System.nanoTime() - start;
+                if (mMemoryCache != null) {
+                    mMemoryCache.put(BitmapMemoryCache.getKey(mSource, mSampleSize, mTargetDensity), bitmap, true);
+                    // keep the bitmap out of the pool until the derivative is written
+                    retained = mMemoryCache.retain(bitmap);
+                }
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                error = e;
+            }
+
+            if (bitmap != null && !retained) {
+                // no way to keep the bitmap alive once delivered: write the derivative first
+                storeDerivative(this, bitmap);
+            }
+
+            if (mAborted) {
+                if (bitmap != null) releaseBitmap(bitmap);
+            } else {
+                final Bitmap result = bitmap;
+                final Throwable failure = error;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(result, failure);
+                    }
+                });
+            }
+
+            if (retained) {
+                storeDerivative(this, bitmap);
+                releaseBitmap(bitmap);
+            }
+        }
+
+        /**
+         * Invoke the callback, on the main thread
+         */
+        void deliver(Bitmap bitmap, Throwable error) {
+            final ArrayList<Task> followers;
+            synchronized (mRunning) {
+                if (mRunning.get(getRequestKey()) == this) {
+                    mRunning.remove(getRequestKey());
+                }
+                followers = mFollowers;
+                mFollowers = null;
+            }
+            if (followers != null) {
+                // before the callback below, which may release the bitmap
+                for (int i = 0; i < followers.size(); i++) {
+                    followers.get(i).deliverShared(this, bitmap, error);
+                }
+            }
+
+            if (mCancelled) {
+                if (bitmap != null) releaseBitmap(bitmap);
+                return;
+            }
+            if (bitmap != null) {
+                mCallback.onImageLoaded(bitmap);
+            } else {
+                mCallback.onImageLoadFailed(error);
+            }
+        }
+
+        /**
+         * Invoke the callback with the result of the decode of another task, on the main thread
+         */
+        private void deliverShared(Task leader, Bitmap bitmap, Throwable error) {
+            synchronized (mRunning) {
+                mLeader = null;
+            }
+            if (mCancelled) return;
+            if (bitmap == null) {
+                mCallback.onImageLoadFailed(error);
+                return;
+            }
+
+            mSampleSize = leader.mSampleSize;
+            mSourceWidth = leader.mSourceWidth;
+            mSourceHeight = leader.mSourceHeight;
+            mTargetDensity = leader.mTargetDensity;
+            // a reference of its own
+            final Bitmap shared = mMemoryCache.acquire(BitmapMemoryCache.getKey(mSource, mSampleSize, mTargetDensity));
+            if (shared == null) {
+                // not cached, e.g. bigger than the cache: decode it alone
+                mFuture = mExecutor.submit(this);
+                return;
+            }
+            mFromMemoryCache = true;
+            mCallback.onImageLoaded(shared);
+        }
+    }
+
+    /**
+     * Aborts the decode as soon as the owner task is cancelled
+     */
+    private static class CancellableInputStream extends FilterInputStream {
+
+        private final Task mTask;
+
+        CancellableInputStream(InputStream in, Task task) {
+            super(in);
+            mTask = task;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkCancelled();
+            return super.skip(n);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (mTask.isAborted()) throw new InterruptedIOException("cancelled");
+        }
+    }
+
+    private static class DecodeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "ImageZoom-decode-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.baiwang.imagezoom.loader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A source of encoded image data which can be opened more than once.<br />
+ * Two sources with the same key are considered to provide the same image.
+ */
+public abstract class ImageSource {
+
+    private final String mKey;
+
+    protected ImageSource(String key) {
+        mKey = key;
+    }
+
+    /**
+     * @return the identity of this source
+     */
+    public final String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Open a new stream over the encoded image. The caller must close it.
+     *
+     * @return
+     * @throws IOException
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    public static ImageSource fromFile(final String pathName) {
+        return new ImageSource("file:" + pathName) {
+            @Override
+            public InputStream openStream() throws IOException {
+                return new BufferedInputStream(new FileInputStream(pathName), 16 * 1024);
+            }
+        };
+    }
+
+    public static ImageSource fromUri(Context context, final Uri uri) {
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        return new ImageSource(uri.toString()) {
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream is = resolver.openInputStream(uri);
+                if (is == null) throw new FileNotFoundException(uri.toString());
+                return new BufferedInputStream(is, 16 * 1024);
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImageSource && mKey.equals(((ImageSource) o).mKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mKey;
+    }
+}
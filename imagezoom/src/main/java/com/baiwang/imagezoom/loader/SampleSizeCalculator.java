@@ -0,0 +1,59 @@
+package com.baiwang.imagezoom.loader;
+
+/**
+ * Sample size math used to decode images no bigger than what can actually be displayed.
+ */
+public final class SampleSizeCalculator {
+
+    /**
+     * When the power of two subsampling leaves a bitmap bigger than this ratio
+     * of the target size, an additional density scaling is applied.
+     */
+    static final float DENSITY_SCALE_THRESHOLD = 0.8f;
+
+    private SampleSizeCalculator() {
+    }
+
+    /**
+     * The scale, relative to the source, at which the image must be decoded
+     * so it stays sharp up to the given zoom
+     *
+     * @param srcWidth   source width
+     * @param srcHeight  source height
+     * @param viewWidth  view width
+     * @param viewHeight view height
+     * @param zoom       the zoom to support, relative to the fit-to-view size
+     * @return a value in (0, 1]
+     */
+    public static float computeDecodeScale(int srcWidth, int srcHeight, int viewWidth, int viewHeight, float zoom) {
+        if (srcWidth <= 0 || srcHeight <= 0 || viewWidth <= 0 || viewHeight <= 0 || zoom <= 0) return 1f;
+        float fit = Math.min((float) viewWidth / srcWidth, (float) viewHeight / srcHeight);
+        return Math.min(1f, fit * zoom);
+    }
+
+    /**
+     * @param decodeScale the scale returned by {@link #computeDecodeScale(int, int, int, int, float)}
+     * @return the largest power of two sample size which keeps the bitmap at least decodeScale times the source
+     */
+    public static int computeSampleSize(float decodeScale) {
+        int sampleSize = 1;
+        if (decodeScale <= 0 || decodeScale >= 1f || Float.isNaN(decodeScale)) return sampleSize;
+        while (sampleSize < (1 << 30) && sampleSize * 2 * decodeScale <= 1f) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * The additional scale to apply after the power of two subsampling
+     *
+     * @param decodeScale the target scale, relative to the source
+     * @param sampleSize  the power of two sample size
+     * @return a value in (0.5, 1], 1 when no further scaling is worth it
+     */
+    public static float computeDensityScale(float decodeScale, int sampleSize) {
+        float remaining = decodeScale * sampleSize;
+        if (remaining >= DENSITY_SCALE_THRESHOLD || remaining <= 0) return 1f;
+        return remaining;
+    }
+}
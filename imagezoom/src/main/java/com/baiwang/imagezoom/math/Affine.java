@@ -0,0 +1,258 @@
+package com.baiwang.imagezoom.math;
+
+/**
+ * A 2D affine transform held in six float fields, with the semantics of
+ * {@code android.graphics.Matrix}: {@code postXxx} operations apply after the current
+ * transform, {@code preXxx} before it, and {@link #getValues(float[])} uses the same
+ * layout as {@code Matrix.getValues}.<br />
+ * Unlike {@code Matrix} it is plain Java: no JNI call per operation, and it runs
+ * on the JVM for tests and benchmarks. The view converts it to a {@code Matrix}
+ * only when it hands the display matrix to the framework.
+ */
+public final class Affine {
+
+    /**
+     * Indexes in the array filled by {@link #getValues(float[])}, the same as {@code Matrix}
+     */
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    /**
+     * sin/cos below this are snapped to 0, so quarter turns stay exact
+     */
+    private static final float TRIG_SNAP = 1f / (1 << 12);
+
+    private float mScaleX, mSkewX, mTransX;
+    private float mSkewY, mScaleY, mTransY;
+
+    public Affine() {
+        reset();
+    }
+
+    public Affine(Affine src) {
+        set(src);
+    }
+
+    public void reset() {
+        mScaleX = 1;
+        mSkewX = 0;
+        mTransX = 0;
+        mSkewY = 0;
+        mScaleY = 1;
+        mTransY = 0;
+    }
+
+    public void set(Affine src) {
+        mScaleX = src.mScaleX;
+        mSkewX = src.mSkewX;
+        mTransX = src.mTransX;
+        mSkewY = src.mSkewY;
+        mScaleY = src.mScaleY;
+        mTransY = src.mTransY;
+    }
+
+    public boolean isIdentity() {
+        return mScaleX == 1 && mSkewX == 0 && mTransX == 0
+                && mSkewY == 0 && mScaleY == 1 && mTransY == 0;
+    }
+
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    public float getSkewX() {
+        return mSkewX;
+    }
+
+    public float getSkewY() {
+        return mSkewY;
+    }
+
+    public float getTranslateX() {
+        return mTransX;
+    }
+
+    public float getTranslateY() {
+        return mTransY;
+    }
+
+    /**
+     * @param values receives the 9 values of the equivalent 3x3 matrix
+     */
+    public void getValues(float[] values) {
+        values[MSCALE_X] = mScaleX;
+        values[MSKEW_X] = mSkewX;
+        values[MTRANS_X] = mTransX;
+        values[MSKEW_Y] = mSkewY;
+        values[MSCALE_Y] = mScaleY;
+        values[MTRANS_Y] = mTransY;
+        values[MPERSP_0] = 0;
+        values[MPERSP_1] = 0;
+        values[MPERSP_2] = 1;
+    }
+
+    /**
+     * @param values the 9 values of a 3x3 matrix, the perspective row is ignored
+     */
+    public void setValues(float[] values) {
+        mScaleX = values[MSCALE_X];
+        mSkewX = values[MSKEW_X];
+        mTransX = values[MTRANS_X];
+        mSkewY = values[MSKEW_Y];
+        mScaleY = values[MSCALE_Y];
+        mTransY = values[MTRANS_Y];
+    }
+
+    public void postTranslate(float dx, float dy) {
+        mTransX += dx;
+        mTransY += dy;
+    }
+
+    public void postScale(float sx, float sy) {
+        mScaleX *= sx;
+        mSkewX *= sx;
+        mTransX *= sx;
+        mSkewY *= sy;
+        mScaleY *= sy;
+        mTransY *= sy;
+    }
+
+    /**
+     * Scale around the pivot (px, py), after the current transform
+     */
+    public void postScale(float sx, float sy, float px, float py) {
+        postScale(sx, sy);
+        mTransX += px - sx * px;
+        mTransY += py - sy * py;
+    }
+
+    /**
+     * Scale before the current transform, i.e. in source coordinates
+     */
+    public void preScale(float sx, float sy) {
+        mScaleX *= sx;
+        mSkewY *= sx;
+        mSkewX *= sy;
+        mScaleY *= sy;
+    }
+
+    /**
+     * Rotate clockwise, in degrees, around the pivot (px, py), after the current transform
+     */
+    public void postRotate(float degrees, float px, float py) {
+        final double radians = Math.toRadians(degrees);
+        float sin = (float) Math.sin(radians);
+        float cos = (float) Math.cos(radians);
+        if (Math.abs(sin) < TRIG_SNAP) sin = 0;
+        if (Math.abs(cos) < TRIG_SNAP) cos = 0;
+
+        setConcat(cos, -sin, px - cos * px + sin * py,
+                sin, cos, py - sin * px - cos * py);
+    }
+
+    /**
+     * Apply the given transform after this one: this = other * this
+     */
+    public void postConcat(Affine other) {
+        setConcat(other.mScaleX, other.mSkewX, other.mTransX,
+                other.mSkewY, other.mScaleY, other.mTransY);
+    }
+
+    /**
+     * this = (a b c, d e f) * this
+     */
+    private void setConcat(float a, float b, float c, float d, float e, float f) {
+        final float scaleX = a * mScaleX + b * mSkewY;
+        final float skewX = a * mSkewX + b * mScaleY;
+        final float transX = a * mTransX + b * mTransY + c;
+        final float skewY = d * mScaleX + e * mSkewY;
+        final float scaleY = d * mSkewX + e * mScaleY;
+        final float transY = d * mTransX + e * mTransY + f;
+        mScaleX = scaleX;
+        mSkewX = skewX;
+        mTransX = transX;
+        mSkewY = skewY;
+        mScaleY = scaleY;
+        mTransY = transY;
+    }
+
+    /**
+     * Map a rectangle and replace it with the bounds of the result
+     *
+     * @param rect left, top, right and bottom, mapped in place
+     */
+    public void mapRect(float[] rect) {
+        final float left = rect[0], top = rect[1], right = rect[2], bottom = rect[3];
+
+        if (mSkewX == 0 && mSkewY == 0) {
+            final float l = left * mScaleX + mTransX;
+            final float r = right * mScaleX + mTransX;
+            final float t = top * mScaleY + mTransY;
+            final float b = bottom * mScaleY + mTransY;
+            rect[0] = Math.min(l, r);
+            rect[1] = Math.min(t, b);
+            rect[2] = Math.max(l, r);
+            rect[3] = Math.max(t, b);
+            return;
+        }
+
+        final float x0 = left * mScaleX + top * mSkewX + mTransX;
+        final float y0 = left * mSkewY + top * mScaleY + mTransY;
+        final float x1 = right * mScaleX + top * mSkewX + mTransX;
+        final float y1 = right * mSkewY + top * mScaleY + mTransY;
+        final float x2 = right * mScaleX + bottom * mSkewX + mTransX;
+        final float y2 = right * mSkewY + bottom * mScaleY + mTransY;
+        final float x3 = left * mScaleX + bottom * mSkewX + mTransX;
+        final float y3 = left * mSkewY + bottom * mScaleY + mTransY;
+        rect[0] = Math.min(Math.min(x0, x1), Math.min(x2, x3));
+        rect[1] = Math.min(Math.min(y0, y1), Math.min(y2, y3));
+        rect[2] = Math.max(Math.max(x0, x1), Math.max(x2, x3));
+        rect[3] = Math.max(Math.max(y0, y1), Math.max(y2, y3));
+    }
+
+    /**
+     * Same as {@code Matrix.mapRadius}: the geometric mean of the lengths of the
+     * mapped x and y vectors of the given length
+     */
+    public float mapRadius(float radius) {
+        final float d0 = (float) Math.sqrt(mScaleX * mScaleX + mSkewY * mSkewY);
+        final float d1 = (float) Math.sqrt(mSkewX * mSkewX + mScaleY * mScaleY);
+        return (float) Math.sqrt(d0 * d1) * Math.abs(radius);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Affine)) return false;
+        Affine other = (Affine) o;
+        return mScaleX == other.mScaleX && mSkewX == other.mSkewX && mTransX == other.mTransX
+                && mSkewY == other.mSkewY && mScaleY == other.mScaleY && mTransY == other.mTransY;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(mScaleX);
+        result = 31 * result + Float.floatToIntBits(mSkewX);
+        result = 31 * result + Float.floatToIntBits(mTransX);
+        result = 31 * result + Float.floatToIntBits(mSkewY);
+        result = 31 * result + Float.floatToIntBits(mScaleY);
+        result = 31 * result + Float.floatToIntBits(mTransY);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Affine{[" + mScaleX + ", " + mSkewX + ", " + mTransX + "][" + mSkewY + ", " + mScaleY + ", " + mTransY + "]}";
+    }
+}
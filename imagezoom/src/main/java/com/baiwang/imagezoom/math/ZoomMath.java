@@ -0,0 +1,118 @@
+package com.baiwang.imagezoom.math;
+
+/**
+ * The scale, center and clamp calculations of {@link com.baiwang.imagezoom.ImageViewTouchBase},
+ * in plain Java so they can be unit tested and benchmarked on the JVM.<br />
+ * Rectangles are passed as their edges, results are written to caller owned arrays:
+ * nothing here allocates.
+ */
+public final class ZoomMath {
+
+    /**
+     * The default max zoom, relative to the image/view size ratio
+     */
+    public static final float MAX_ZOOM_FACTOR = 8;
+
+    private ZoomMath() {
+    }
+
+    /**
+     * Translation which centers the image on the axis it is smaller than the view,
+     * and pulls its edges back to the view edges on the other one
+     *
+     * @param left       image bounds, in view coordinates
+     * @param top
+     * @param right
+     * @param bottom
+     * @param viewWidth
+     * @param viewHeight
+     * @param out        receives the x and y translation
+     */
+    public static void getCenter(float left, float top, float right, float bottom,
+                                 int viewWidth, int viewHeight, float[] out) {
+        final float width = right - left;
+        final float height = bottom - top;
+        float deltaX = 0, deltaY = 0;
+
+        if (height < viewHeight) {
+            deltaY = (viewHeight - height) / 2 - top;
+        } else if (top > 0) {
+            deltaY = -top;
+        } else if (bottom < viewHeight) {
+            deltaY = viewHeight - bottom;
+        }
+
+        if (width < viewWidth) {
+            deltaX = (viewWidth - width) / 2 - left;
+        } else if (left > 0) {
+            deltaX = -left;
+        } else if (right < viewWidth) {
+            deltaX = viewWidth - right;
+        }
+
+        out[0] = deltaX;
+        out[1] = deltaY;
+    }
+
+    /**
+     * Limit a scroll so the image edges do not move inside the view
+     *
+     * @param left       image bounds, in view coordinates
+     * @param top
+     * @param right
+     * @param bottom
+     * @param viewWidth
+     * @param viewHeight
+     * @param scroll     the x and y scroll, updated in place
+     */
+    public static void clampScroll(float left, float top, float right, float bottom,
+                                   int viewWidth, int viewHeight, float[] scroll) {
+        float scrollX = scroll[0];
+        float scrollY = scroll[1];
+
+        if (top >= 0 && bottom <= viewHeight) scrollY = 0;
+        if (left >= 0 && right <= viewWidth) scrollX = 0;
+        if (top + scrollY >= 0 && bottom > viewHeight) scrollY = (int) (0 - top);
+        if (bottom + scrollY <= viewHeight && top < 0) scrollY = (int) (viewHeight - bottom);
+        if (left + scrollX >= 0) scrollX = (int) (0 - left);
+        if (right + scrollX <= viewWidth) scrollX = (int) (viewWidth - right);
+
+        scroll[0] = scrollX;
+        scroll[1] = scrollY;
+    }
+
+    /**
+     * @return the default max zoom for an image of the given size in the given view
+     */
+    public static float computeMaxZoom(int imageWidth, int imageHeight, int viewWidth, int viewHeight) {
+        float fw = (float) imageWidth / (float) viewWidth;
+        float fh = (float) imageHeight / (float) viewHeight;
+        return Math.max(fw, fh) * MAX_ZOOM_FACTOR;
+    }
+
+    /**
+     * @param baseScale the scale fitting the image to the view
+     * @return the default min zoom, never above 1
+     */
+    public static float computeMinZoom(float baseScale) {
+        return Math.min(1f, 1f / baseScale);
+    }
+
+    /**
+     * The mipmap level to draw an image with at the given scale: the smallest level,
+     * each one half the size of the previous, still at least as big as the image on screen
+     *
+     * @param drawScale the screen size of one image pixel
+     * @param maxLevel  the smallest level available
+     * @return the level, 0 for the image itself
+     */
+    public static int computeMipLevel(float drawScale, int maxLevel) {
+        if (drawScale <= 0) return 0;
+        int level = 0;
+        while (level < maxLevel && drawScale * 2 <= 1) {
+            drawScale *= 2;
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,477 @@
+package com.baiwang.imagezoom.math;
+
+/**
+ * The zoom and pan state of an image view, without any dependency on the framework.<br />
+ * Inputs are the view size, the content size and the gesture deltas; the output is the
+ * display transform, {@link #getDisplayMatrix()}: the base matrix fitting the content to
+ * the view, followed by the support matrix holding the user zoom and pan.<br />
+ * {@link com.baiwang.imagezoom.ImageViewTouchBase} is an adapter around it: it feeds the
+ * layout and touch events in and hands the resulting matrix to the framework. Everything
+ * here runs on a plain JVM, for tests and benchmarks of simulated gestures.
+ */
+public class ZoomState {
+
+    public static final float ZOOM_INVALID = -1f;
+
+    /**
+     * How the content is scaled by default, see
+     * {@link com.baiwang.imagezoom.ImageViewTouchBase.DisplayType}
+     */
+    public enum Fit {
+        NONE, FIT_TO_SCREEN, FIT_IF_BIGGER, FILL_TO_SCREEN
+    }
+
+    private final Affine mBaseMatrix = new Affine();
+    private final Affine mSuppMatrix = new Affine();
+    private final Affine mDisplayMatrix = new Affine();
+    private final Affine mTempMatrix = new Affine();
+    private final float[] mRect = new float[4];
+    private final float[] mDelta = new float[2];
+    private Affine mNextMatrix;
+
+    private int mViewWidth = -1;
+    private int mViewHeight = -1;
+    private int mContentWidth;
+    private int mContentHeight;
+    private Fit mFit = Fit.NONE;
+
+    private float mMinZoom = ZOOM_INVALID;
+    private float mMaxZoom = ZOOM_INVALID;
+    // true when min and max zoom are explicitly defined
+    private boolean mMinZoomDefined;
+    private boolean mMaxZoomDefined;
+
+    // last non zero scale, the x scale of a quarter turned matrix is 0
+    private float mLastScale;
+
+    private float mDoubleTapStep;
+    private int mDoubleTapDirection = 1;
+
+    public void setFit(Fit fit) {
+        mFit = fit;
+    }
+
+    public Fit getFit() {
+        return mFit;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    public boolean hasContent() {
+        return mContentWidth > 0 && mContentHeight > 0;
+    }
+
+    /**
+     * Set the intrinsic size of new content, laid out at the next {@link #layout}
+     */
+    public void setContentSize(int width, int height) {
+        mContentWidth = width;
+        mContentHeight = height;
+    }
+
+    /**
+     * Remove the content
+     */
+    public void clearContent() {
+        setContentSize(0, 0);
+        mBaseMatrix.reset();
+    }
+
+    /**
+     * @param matrix the support matrix to restore at the next layout of new content, or null
+     */
+    public void setNextSupportMatrix(Affine matrix) {
+        mNextMatrix = matrix != null ? new Affine(matrix) : null;
+    }
+
+    /**
+     * Replace the content with the same image at another resolution, keeping the
+     * image at the same place on screen
+     */
+    public void swapContentSize(int width, int height) {
+        mBaseMatrix.preScale((float) mContentWidth / width, (float) mContentHeight / height);
+        setContentSize(width, height);
+        invalidateZoomLimits();
+    }
+
+    /**
+     * Lay the content out in a view of the given size
+     *
+     * @param viewWidth
+     * @param viewHeight
+     * @param sizeChanged    the view size changed
+     * @param contentChanged the content changed since the last layout
+     * @param fitChanged     the fit changed since the last layout
+     * @param userScaled     the user zoomed since the last layout
+     */
+    public void layout(int viewWidth, int viewHeight, boolean sizeChanged, boolean contentChanged,
+                       boolean fitChanged, boolean userScaled) {
+        final int deltaX = viewWidth - mViewWidth;
+        final int deltaY = viewHeight - mViewHeight;
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+
+        if (!hasContent() || !(sizeChanged || contentChanged || fitChanged)) return;
+
+        float scale = 1;
+
+        // retrieve the old values
+        final float oldMatrixScale = getBaseScale();
+        final float oldScale = getScale();
+        final float oldMinScale = Math.min(1f, 1f / oldMatrixScale);
+
+        computeBaseMatrix();
+        final float newMatrixScale = getBaseScale();
+
+        if (contentChanged || fitChanged) {
+            // 1. content changed or fit changed
+            if (mNextMatrix != null) {
+                mSuppMatrix.set(mNextMatrix);
+                mNextMatrix = null;
+                scale = getScale();
+            } else {
+                mSuppMatrix.reset();
+                scale = getDefaultScale();
+            }
+
+            if (scale != getScale()) {
+                zoomTo(scale);
+            }
+        } else {
+            // 2. view size changed
+            invalidateZoomLimits();
+            postTranslate(-deltaX, -deltaY);
+
+            if (!userScaled) {
+                scale = getDefaultScale();
+            } else if (Math.abs(oldScale - oldMinScale) > 0.001) {
+                scale = (oldMatrixScale / newMatrixScale) * oldScale;
+            }
+            zoomTo(scale);
+        }
+
+        if (scale > getMaxScale() || scale < getMinScale()) {
+            // if current scale if outside the min/max bounds
+            // then restore the correct scale
+            zoomTo(scale);
+        }
+
+        center();
+    }
+
+    /**
+     * Restore the default display of the content
+     */
+    public void reset() {
+        mSuppMatrix.reset();
+        float scale = getDefaultScale();
+        if (scale != getScale()) {
+            zoomTo(scale);
+        }
+    }
+
+    /**
+     * Fit and center the content in the view
+     */
+    private void computeBaseMatrix() {
+        final float w = mContentWidth;
+        final float h = mContentHeight;
+        final float scale = Math.min(mViewWidth / w, mViewHeight / h);
+
+        mBaseMatrix.reset();
+        mBaseMatrix.postScale(scale, scale);
+        mBaseMatrix.postTranslate((mViewWidth - w * scale) / 2.0f, (mViewHeight - h * scale) / 2.0f);
+    }
+
+    public float getDefaultScale() {
+        switch (mFit) {
+            case FIT_TO_SCREEN:
+                // always fit to screen
+                return 1f;
+            case FIT_IF_BIGGER:
+                // normal scale if smaller, fit to screen otherwise
+                return Math.min(1f, 1f / getBaseScale());
+            case FILL_TO_SCREEN:
+                float scale = (float) mContentWidth / mContentHeight;
+                return scale < 1f ? 1f / scale : scale;
+            case NONE:
+            default:
+                // no scale
+                return 1f / getBaseScale();
+        }
+    }
+
+    /**
+     * @return the current zoom, relative to the base matrix
+     */
+    public float getScale() {
+        float scale = mSuppMatrix.getScaleX();
+        if (scale != 0) {
+            mLastScale = scale;
+        }
+        return mLastScale;
+    }
+
+    public float getBaseScale() {
+        return mBaseMatrix.getScaleX();
+    }
+
+    public float getMaxScale() {
+        if (mMaxZoom == ZOOM_INVALID) {
+            mMaxZoom = hasContent() ? ZoomMath.computeMaxZoom(mContentWidth, mContentHeight, mViewWidth, mViewHeight) : 1f;
+        }
+        return mMaxZoom;
+    }
+
+    public float getMinScale() {
+        if (mMinZoom == ZOOM_INVALID) {
+            mMinZoom = hasContent() ? ZoomMath.computeMinZoom(getBaseScale()) : 1f;
+        }
+        return mMinZoom;
+    }
+
+    public void setMinScale(float value) {
+        mMinZoom = value;
+    }
+
+    public void setMaxScale(float value) {
+        mMaxZoom = value;
+    }
+
+    /**
+     * @return the explicitly defined max zoom, or {@link #ZOOM_INVALID}
+     */
+    public float getDefinedMaxScale() {
+        return mMaxZoomDefined ? mMaxZoom : ZOOM_INVALID;
+    }
+
+    /**
+     * Recompute the zoom limits, unless explicitly defined, on the next access
+     */
+    public void invalidateZoomLimits() {
+        if (!mMinZoomDefined) mMinZoom = ZOOM_INVALID;
+        if (!mMaxZoomDefined) mMaxZoom = ZOOM_INVALID;
+    }
+
+    public Affine getBaseMatrix() {
+        return mBaseMatrix;
+    }
+
+    public Affine getSupportMatrix() {
+        return mSuppMatrix;
+    }
+
+    /**
+     * @return the display transform, base matrix followed by the support matrix.
+     * The instance is reused by the next call.
+     */
+    public Affine getDisplayMatrix() {
+        return getDisplayMatrix(mSuppMatrix);
+    }
+
+    private Affine getDisplayMatrix(Affine supportMatrix) {
+        mDisplayMatrix.set(mBaseMatrix);
+        mDisplayMatrix.postConcat(supportMatrix);
+        return mDisplayMatrix;
+    }
+
+    /**
+     * @param out receives the left, top, right and bottom of the content on screen
+     * @return false if there is no content
+     */
+    public boolean getContentRect(float[] out) {
+        return getContentRect(mSuppMatrix, out);
+    }
+
+    private boolean getContentRect(Affine supportMatrix, float[] out) {
+        if (!hasContent()) return false;
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = mContentWidth;
+        out[3] = mContentHeight;
+        getDisplayMatrix(supportMatrix).mapRect(out);
+        return true;
+    }
+
+    /**
+     * @param out receives the translation which would center the content
+     */
+    public void getCenterDelta(float[] out) {
+        getCenterDelta(mSuppMatrix, out);
+    }
+
+    private void getCenterDelta(Affine supportMatrix, float[] out) {
+        if (!getContentRect(supportMatrix, mRect)) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        ZoomMath.getCenter(mRect[0], mRect[1], mRect[2], mRect[3], mViewWidth, mViewHeight, out);
+    }
+
+    /**
+     * Center the content, or pull its edges back to the view edges
+     */
+    public void center() {
+        getCenterDelta(mSuppMatrix, mDelta);
+        postTranslate(mDelta[0], mDelta[1]);
+    }
+
+    public void postTranslate(float dx, float dy) {
+        mSuppMatrix.postTranslate(dx, dy);
+    }
+
+    public void postScale(float scale, float centerX, float centerY) {
+        mSuppMatrix.postScale(scale, scale, centerX, centerY);
+    }
+
+    public void postScale(float sx, float sy, float px, float py) {
+        getScale();
+        mSuppMatrix.postScale(sx, sy, px, py);
+    }
+
+    public void postRotate(float degrees, float px, float py) {
+        // keep the current scale: a quarter turn zeroes the x scale
+        getScale();
+        mSuppMatrix.postRotate(degrees, px, py);
+    }
+
+    /**
+     * Zoom to the given scale around the view center
+     */
+    public void zoomTo(float scale) {
+        zoomTo(scale, mViewWidth / 2f, mViewHeight / 2f);
+    }
+
+    /**
+     * Zoom to the given scale around the given point, then center
+     */
+    public void zoomTo(float scale, float centerX, float centerY) {
+        postScale(scale / getScale(), centerX, centerY);
+        center();
+    }
+
+    /**
+     * The content point at the view center, relative to the content on screen:
+     * 0,0 at its top left corner, 1,1 at its bottom right one.
+     * Independent of the view size, see {@link #restoreFocus(float, float, float)}
+     *
+     * @param out receives the x and y of the point
+     * @return false if there is no content
+     */
+    public boolean getFocus(float[] out) {
+        if (!getContentRect(mSuppMatrix, mRect)) return false;
+        final float width = mRect[2] - mRect[0];
+        final float height = mRect[3] - mRect[1];
+        out[0] = width > 0 ? (mViewWidth / 2f - mRect[0]) / width : 0.5f;
+        out[1] = height > 0 ? (mViewHeight / 2f - mRect[1]) / height : 0.5f;
+        return true;
+    }
+
+    /**
+     * Zoom to the given scale, relative to the min scale, then bring the given content
+     * point, as returned by {@link #getFocus(float[])}, to the view center, within the
+     * content edges
+     *
+     * @param relativeScale the scale divided by the min scale
+     * @param focusX
+     * @param focusY
+     */
+    public void restoreFocus(float relativeScale, float focusX, float focusY) {
+        final float minScale = getMinScale();
+        zoomTo(Math.max(minScale, Math.min(getMaxScale(), relativeScale * minScale)));
+        if (!getContentRect(mSuppMatrix, mRect)) return;
+        final float x = mRect[0] + focusX * (mRect[2] - mRect[0]);
+        final float y = mRect[1] + focusY * (mRect[3] - mRect[1]);
+        panBy(mViewWidth / 2f - x, mViewHeight / 2f - y);
+    }
+
+    /**
+     * Scroll by the given amount, stopping at the content edges
+     */
+    public void panBy(float dx, float dy) {
+        mDelta[0] = dx;
+        mDelta[1] = dy;
+        if (getContentRect(mSuppMatrix, mRect)) {
+            ZoomMath.clampScroll(mRect[0], mRect[1], mRect[2], mRect[3], mViewWidth, mViewHeight, mDelta);
+        }
+        postTranslate(mDelta[0], mDelta[1]);
+        center();
+    }
+
+    /**
+     * The point an animated zoom to the given scale must scale around, so the zoomed
+     * content ends up centered: zooming at each step around it needs no re-centering
+     * jump at the end
+     *
+     * @param scale   the target scale
+     * @param centerX the requested zoom center
+     * @param centerY
+     * @param out     receives the focus point
+     */
+    public void getZoomFocus(float scale, float centerX, float centerY, float[] out) {
+        mTempMatrix.set(mSuppMatrix);
+        mTempMatrix.postScale(scale, scale, centerX, centerY);
+        getCenterDelta(mTempMatrix, mDelta);
+        out[0] = centerX + mDelta[0] * scale;
+        out[1] = centerY + mDelta[1] * scale;
+    }
+
+    /**
+     * @param step the scale added by each double tap, see {@link #nextDoubleTapScale(float, float)}
+     */
+    public void setDoubleTapStep(float step) {
+        mDoubleTapStep = step;
+    }
+
+    public float getDoubleTapStep() {
+        return mDoubleTapStep;
+    }
+
+    /**
+     * @return 1 if the next double tap zooms in, -1 if it goes back to the base scale
+     */
+    public int getDoubleTapDirection() {
+        return mDoubleTapDirection;
+    }
+
+    /**
+     * @param direction 1 to zoom in on the next double tap, any other value to go back to the base scale
+     */
+    public void setDoubleTapDirection(int direction) {
+        mDoubleTapDirection = direction;
+    }
+
+    /**
+     * Restart the double tap cycle from zooming in
+     */
+    public void resetDoubleTap() {
+        mDoubleTapDirection = 1;
+    }
+
+    /**
+     * Double taps zoom in by the double tap step until the max scale, then the
+     * next one goes back to the base scale
+     *
+     * @param scale    the current scale
+     * @param maxScale the max scale
+     * @return the scale of this double tap
+     */
+    public float nextDoubleTapScale(float scale, float maxScale) {
+        if (mDoubleTapDirection != 1) {
+            mDoubleTapDirection = 1;
+            return 1f;
+        } else if ((mDoubleTapStep * 2.0f) + scale <= maxScale) {
+            return scale + mDoubleTapStep;
+        } else {
+            mDoubleTapDirection = -1;
+            return maxScale;
+        }
+    }
+}
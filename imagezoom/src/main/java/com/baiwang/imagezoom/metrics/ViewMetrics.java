@@ -0,0 +1,212 @@
+package com.baiwang.imagezoom.metrics;
+
+import com.baiwang.imagezoom.loader.ImageLoader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Field metrics of the image views it is set on, see
+ * {@link com.baiwang.imagezoom.ImageViewTouchBase#setMetrics(ViewMetrics)}:
+ * draw durations, input to draw latency of the scale and scroll gestures, animation
+ * frames dropped against the display refresh rate, decode times and cache hit rates.<br />
+ * The counters are lock-free, they can be read from any thread while the views record.
+ * One instance can be shared by several views to aggregate them.
+ */
+public class ViewMetrics {
+
+    /**
+     * Notified of each sample, on the main thread. Keep it cheap, it runs in the draw pass.
+     */
+    public interface Listener {
+
+        /**
+         * @param durationNanos time spent in {@code onDraw}
+         */
+        void onDraw(long durationNanos);
+
+        /**
+         * @param latencyNanos time from a scale or scroll event to the draw showing it.
+         *                     Millisecond resolution, the resolution of the event times.
+         */
+        void onInputLatency(long latencyNanos);
+
+        /**
+         * @param count frames missed since the previous animation frame
+         */
+        void onFramesDropped(int count);
+
+        /**
+         * @param from        where the bitmap came from
+         * @param decodeNanos time spent decoding, 0 for a memory cache hit
+         */
+        void onImageLoaded(ImageLoader.LoadedFrom from, long decodeNanos);
+    }
+
+    /**
+     * Count, total and max of a duration
+     */
+    public static class Stat {
+
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = mMaxNanos.get())) {
+                if (mMaxNanos.compareAndSet(max, nanos)) break;
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos.get();
+        }
+
+        /**
+         * @return the mean duration, 0 if nothing has been recorded
+         */
+        public long getMeanNanos() {
+            final long count = mCount.get();
+            return count > 0 ? mTotalNanos.get() / count : 0;
+        }
+
+        public void reset() {
+            mCount.set(0);
+            mTotalNanos.set(0);
+            mMaxNanos.set(0);
+        }
+    }
+
+    private final Stat mDraw = new Stat();
+    private final Stat mInputLatency = new Stat();
+    private final Stat mDecode = new Stat();
+    private final AtomicLong mAnimationFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mMemoryCacheHits = new AtomicLong();
+    private final AtomicLong mDiskCacheHits = new AtomicLong();
+    private final AtomicLong mCacheMisses = new AtomicLong();
+    private volatile Listener mListener;
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void recordDraw(long durationNanos) {
+        mDraw.record(durationNanos);
+        final Listener listener = mListener;
+        if (listener != null) listener.onDraw(durationNanos);
+    }
+
+    public void recordInputLatency(long latencyNanos) {
+        mInputLatency.record(latencyNanos);
+        final Listener listener = mListener;
+        if (listener != null) listener.onInputLatency(latencyNanos);
+    }
+
+    /**
+     * Record an animation frame
+     *
+     * @param sinceLastFrameNanos time since the previous frame of the same animation run,
+     *                            0 for the first frame
+     * @param frameIntervalNanos  the display refresh interval
+     */
+    public void recordAnimationFrame(long sinceLastFrameNanos, long frameIntervalNanos) {
+        mAnimationFrames.incrementAndGet();
+        final int dropped = countDroppedFrames(sinceLastFrameNanos, frameIntervalNanos);
+        if (dropped > 0) {
+            mDroppedFrames.addAndGet(dropped);
+            final Listener listener = mListener;
+            if (listener != null) listener.onFramesDropped(dropped);
+        }
+    }
+
+    public void recordImageLoaded(ImageLoader.LoadedFrom from, long decodeNanos) {
+        switch (from) {
+            case MEMORY_CACHE:
+                mMemoryCacheHits.incrementAndGet();
+                break;
+            case DISK_CACHE:
+                mDiskCacheHits.incrementAndGet();
+                mDecode.record(decodeNanos);
+                break;
+            case SOURCE:
+            default:
+                mCacheMisses.incrementAndGet();
+                mDecode.record(decodeNanos);
+                break;
+        }
+        final Listener listener = mListener;
+        if (listener != null) listener.onImageLoaded(from, decodeNanos);
+    }
+
+    /**
+     * @return the vsync ticks missed between two frames, frame times jitter by up to half an interval
+     */
+    static int countDroppedFrames(long sinceLastFrameNanos, long frameIntervalNanos) {
+        if (sinceLastFrameNanos <= 0 || frameIntervalNanos <= 0) return 0;
+        final long ticks = (sinceLastFrameNanos + frameIntervalNanos / 2) / frameIntervalNanos;
+        return (int) Math.max(0, ticks - 1);
+    }
+
+    public Stat getDrawStat() {
+        return mDraw;
+    }
+
+    public Stat getInputLatencyStat() {
+        return mInputLatency;
+    }
+
+    public Stat getDecodeStat() {
+        return mDecode;
+    }
+
+    public long getAnimationFrameCount() {
+        return mAnimationFrames.get();
+    }
+
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    public long getMemoryCacheHitCount() {
+        return mMemoryCacheHits.get();
+    }
+
+    public long getDiskCacheHitCount() {
+        return mDiskCacheHits.get();
+    }
+
+    public long getCacheMissCount() {
+        return mCacheMisses.get();
+    }
+
+    /**
+     * @return the share of the loads served by the memory or the disk cache, 0 if nothing has been loaded
+     */
+    public float getCacheHitRate() {
+        final long hits = mMemoryCacheHits.get() + mDiskCacheHits.get();
+        final long total = hits + mCacheMisses.get();
+        return total > 0 ? (float) hits / total : 0;
+    }
+
+    public void reset() {
+        mDraw.reset();
+        mInputLatency.reset();
+        mDecode.reset();
+        mAnimationFrames.set(0);
+        mDroppedFrames.set(0);
+        mMemoryCacheHits.set(0);
+        mDiskCacheHits.set(0);
+        mCacheMisses.set(0);
+    }
+}
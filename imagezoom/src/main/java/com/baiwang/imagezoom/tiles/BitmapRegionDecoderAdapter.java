@@ -0,0 +1,70 @@
+package com.baiwang.imagezoom.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link IRegionDecoder} backed by the framework {@link BitmapRegionDecoder}
+ */
+public class BitmapRegionDecoderAdapter implements IRegionDecoder<Bitmap> {
+
+    private final BitmapRegionDecoder mDecoder;
+    private final Bitmap.Config mConfig;
+
+    public BitmapRegionDecoderAdapter(BitmapRegionDecoder decoder) {
+        this(decoder, Bitmap.Config.ARGB_8888);
+    }
+
+    public BitmapRegionDecoderAdapter(BitmapRegionDecoder decoder, Bitmap.Config config) {
+        mDecoder = decoder;
+        mConfig = config;
+    }
+
+    public static BitmapRegionDecoderAdapter newInstance(String pathName) throws IOException {
+        return new BitmapRegionDecoderAdapter(BitmapRegionDecoder.newInstance(pathName, false));
+    }
+
+    public static BitmapRegionDecoderAdapter newInstance(InputStream is) throws IOException {
+        return new BitmapRegionDecoderAdapter(BitmapRegionDecoder.newInstance(is, false));
+    }
+
+    @Override
+    public int getWidth() {
+        return mDecoder.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mDecoder.getHeight();
+    }
+
+    @Override
+    public Bitmap decodeRegion(int left, int top, int right, int bottom, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = mConfig;
+        try {
+            return mDecoder.decodeRegion(new Rect(left, top, right, bottom), options);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // decoder recycled or region out of bounds
+            return null;
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void releaseRegion(Bitmap region) {
+        region.recycle();
+    }
+
+    @Override
+    public void recycle() {
+        mDecoder.recycle();
+    }
+}
@@ -0,0 +1,46 @@
+package com.baiwang.imagezoom.tiles;
+
+/**
+ * Decodes rectangular regions of a (potentially huge) source image.<br />
+ * The Android implementation is {@link BitmapRegionDecoderAdapter}, but the
+ * interface itself does not depend on the framework so that a plain JVM
+ * stand-in can be used in tests.
+ *
+ * @param <T> the decoded region type
+ */
+public interface IRegionDecoder<T> {
+
+    /**
+     * @return the full width of the source image
+     */
+    int getWidth();
+
+    /**
+     * @return the full height of the source image
+     */
+    int getHeight();
+
+    /**
+     * Decode the given region of the source image
+     *
+     * @param left       left edge, in source pixels
+     * @param top        top edge, in source pixels
+     * @param right      right edge (exclusive), in source pixels
+     * @param bottom     bottom edge (exclusive), in source pixels
+     * @param sampleSize power of two subsampling factor
+     * @return the decoded region or null if decoding failed
+     */
+    T decodeRegion(int left, int top, int right, int bottom, int sampleSize);
+
+    /**
+     * Release a region previously returned by {@link #decodeRegion(int, int, int, int, int)}
+     *
+     * @param region
+     */
+    void releaseRegion(T region);
+
+    /**
+     * Release the decoder itself. No more regions can be decoded afterwards.
+     */
+    void recycle();
+}
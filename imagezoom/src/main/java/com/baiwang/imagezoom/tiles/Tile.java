@@ -0,0 +1,61 @@
+package com.baiwang.imagezoom.tiles;
+
+/**
+ * A single tile of a {@link TileGrid}, holding its source rectangle and,
+ * once decoded, its region.
+ *
+ * @param <T> the decoded region type
+ */
+public class Tile<T> {
+
+    static final int STATE_PENDING = 0;
+    static final int STATE_LOADING = 1;
+    static final int STATE_READY = 2;
+    static final int STATE_EVICTED = 3;
+
+    final long key;
+    final int sampleSize;
+    final int left;
+    final int top;
+    final int right;
+    final int bottom;
+
+    int state = STATE_PENDING;
+    T region;
+
+    Tile(long key, int sampleSize, int left, int top, int right, int bottom) {
+        this.key = key;
+        this.sampleSize = sampleSize;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * @return the decoded region, null if the tile is not ready yet
+     */
+    public T getRegion() {
+        return region;
+    }
+}
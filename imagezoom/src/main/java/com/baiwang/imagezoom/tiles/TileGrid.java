@@ -0,0 +1,93 @@
+package com.baiwang.imagezoom.tiles;
+
+/**
+ * Splits a source image into square tiles for a given sample size.<br />
+ * A tile always covers {@code tileSize} decoded pixels, so at sample size
+ * <i>n</i> it spans {@code tileSize * n} source pixels.
+ */
+public class TileGrid {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final int mImageWidth;
+    private final int mImageHeight;
+    private final int mTileSize;
+
+    public TileGrid(int imageWidth, int imageHeight) {
+        this(imageWidth, imageHeight, DEFAULT_TILE_SIZE);
+    }
+
+    public TileGrid(int imageWidth, int imageHeight, int tileSize) {
+        if (imageWidth <= 0 || imageHeight <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid grid: " + imageWidth + "x" + imageHeight + ", tile: " + tileSize);
+        }
+        mImageWidth = imageWidth;
+        mImageHeight = imageHeight;
+        mTileSize = tileSize;
+    }
+
+    public int getImageWidth() {
+        return mImageWidth;
+    }
+
+    public int getImageHeight() {
+        return mImageHeight;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * Returns the largest power of two sample size which still provides
+     * at least one decoded pixel per screen pixel
+     *
+     * @param scale the on screen size of one source pixel
+     * @return
+     */
+    public static int computeSampleSize(float scale) {
+        int sampleSize = 1;
+        if (scale <= 0 || Float.isNaN(scale)) return sampleSize;
+        while (sampleSize < (1 << 30) && sampleSize * 2 * scale <= 1f) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @param sampleSize
+     * @return the number of source pixels covered by a single tile
+     */
+    public int getTileSpan(int sampleSize) {
+        return mTileSize * sampleSize;
+    }
+
+    public int getColumns(int sampleSize) {
+        int span = getTileSpan(sampleSize);
+        return (mImageWidth + span - 1) / span;
+    }
+
+    public int getRows(int sampleSize) {
+        int span = getTileSpan(sampleSize);
+        return (mImageHeight + span - 1) / span;
+    }
+
+    public int getColumn(float x, int sampleSize) {
+        return clamp((int) Math.floor(x / getTileSpan(sampleSize)), 0, getColumns(sampleSize) - 1);
+    }
+
+    public int getRow(float y, int sampleSize) {
+        return clamp((int) Math.floor(y / getTileSpan(sampleSize)), 0, getRows(sampleSize) - 1);
+    }
+
+    /**
+     * Unique key for a tile position, stable across calls
+     */
+    public static long getKey(int sampleSize, int column, int row) {
+        return ((long) Integer.numberOfTrailingZeros(sampleSize) << 56) | ((long) column << 28) | row;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : value > max ? max : value;
+    }
+}
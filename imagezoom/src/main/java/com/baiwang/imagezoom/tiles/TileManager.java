@@ -0,0 +1,248 @@
+package com.baiwang.imagezoom.tiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the set of decoded tiles in sync with the visible part of the image.<br />
+ * A coarse base layer covering the whole image is always kept, plus the tiles
+ * intersecting the current viewport at the sample size the current scale calls for.
+ * Every tile outside the viewport, or decoded at a different sample size, is
+ * released immediately, so memory is bounded by the viewport size and not by
+ * the source size: a decoded pixel is never shown smaller than half a screen
+ * pixel, so at most {@code (2 * w / tileSize + 2) * (2 * h / tileSize + 2)}
+ * tiles are resident for a w x h viewport.<br />
+ * All the methods are thread safe; {@link #decodeTile(Tile)} and
+ * {@link #decodeBase()} are meant to be invoked from a worker thread.<br />
+ * {@link #update(float, float, float, float, float, List)} runs at every scroll and
+ * zoom event: once the visible tiles exist it does not allocate. Tiles are kept in a
+ * plain list, the resident set is small enough for a linear lookup.
+ *
+ * @param <T> the decoded region type
+ */
+public class TileManager<T> {
+
+    private final IRegionDecoder<T> mDecoder;
+    private final TileGrid mGrid;
+    private final List<Tile<T>> mTiles = new ArrayList<>();
+    private final List<Tile<T>> mReleased = new ArrayList<>();
+
+    private final int mBaseSampleSize;
+    private T mBase;
+    private boolean mRecycled;
+
+    /**
+     * @param decoder        the source decoder
+     * @param tileSize       size of a tile, in decoded pixels
+     * @param baseSampleSize sample size of the always resident base layer
+     */
+    public TileManager(IRegionDecoder<T> decoder, int tileSize, int baseSampleSize) {
+        mDecoder = decoder;
+        mGrid = new TileGrid(decoder.getWidth(), decoder.getHeight(), tileSize);
+        mBaseSampleSize = Math.max(1, baseSampleSize);
+    }
+
+    public TileGrid getGrid() {
+        return mGrid;
+    }
+
+    public int getBaseSampleSize() {
+        return mBaseSampleSize;
+    }
+
+    public synchronized T getBase() {
+        return mBase;
+    }
+
+    /**
+     * Decode the base layer, if not yet available
+     *
+     * @return true if the base layer is available
+     */
+    public boolean decodeBase() {
+        synchronized (this) {
+            if (mRecycled) return false;
+            if (mBase != null) return true;
+        }
+        T base = mDecoder.decodeRegion(0, 0, mGrid.getImageWidth(), mGrid.getImageHeight(), mBaseSampleSize);
+        synchronized (this) {
+            if (mRecycled || mBase != null) {
+                if (base != null) mDecoder.releaseRegion(base);
+                return !mRecycled;
+            }
+            mBase = base;
+            return base != null;
+        }
+    }
+
+    /**
+     * Update the resident tiles for the given viewport
+     *
+     * @param left       visible rect, in source pixels
+     * @param top
+     * @param right
+     * @param bottom
+     * @param scale      the on screen size of one source pixel
+     * @param outMissing receives the tiles which need to be decoded
+     * @return the sample size selected for the given scale
+     */
+    public int update(float left, float top, float right, float bottom, float scale, List<Tile<T>> outMissing) {
+        final int sampleSize = TileGrid.computeSampleSize(scale);
+        outMissing.clear();
+
+        synchronized (this) {
+            if (mRecycled) return sampleSize;
+
+            if (sampleSize >= mBaseSampleSize || right <= left || bottom <= top) {
+                // the base layer is good enough
+                evict(-1, 0, 0, 0, 0);
+            } else {
+                final int span = mGrid.getTileSpan(sampleSize);
+                final int firstColumn = mGrid.getColumn(left, sampleSize);
+                final int lastColumn = mGrid.getColumn(right - 1, sampleSize);
+                final int firstRow = mGrid.getRow(top, sampleSize);
+                final int lastRow = mGrid.getRow(bottom - 1, sampleSize);
+
+                evict(sampleSize, firstColumn, firstRow, lastColumn, lastRow);
+
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        long key = TileGrid.getKey(sampleSize, column, row);
+                        Tile<T> tile = findTile(key);
+                        if (tile == null) {
+                            int x = column * span;
+                            int y = row * span;
+                            tile = new Tile<>(key, sampleSize, x, y,
+                                    Math.min(x + span, mGrid.getImageWidth()), Math.min(y + span, mGrid.getImageHeight()));
+                            mTiles.add(tile);
+                        }
+                        if (tile.state == Tile.STATE_PENDING) {
+                            tile.state = Tile.STATE_LOADING;
+                            outMissing.add(tile);
+                        }
+                    }
+                }
+            }
+        }
+        releaseEvicted();
+        return sampleSize;
+    }
+
+    /**
+     * Decode a tile previously returned by {@link #update(float, float, float, float, float, List)}
+     *
+     * @param tile
+     * @return true if the tile has been decoded and is still wanted
+     */
+    public boolean decodeTile(Tile<T> tile) {
+        synchronized (this) {
+            if (mRecycled || tile.state != Tile.STATE_LOADING) return false;
+        }
+        T region = mDecoder.decodeRegion(tile.left, tile.top, tile.right, tile.bottom, tile.sampleSize);
+        synchronized (this) {
+            if (!mRecycled && tile.state == Tile.STATE_LOADING && region != null) {
+                tile.region = region;
+                tile.state = Tile.STATE_READY;
+                return true;
+            }
+            if (tile.state == Tile.STATE_LOADING) {
+                // decode failed, allow a new attempt on the next update
+                tile.state = Tile.STATE_PENDING;
+            }
+        }
+        if (region != null) mDecoder.releaseRegion(region);
+        return false;
+    }
+
+    /**
+     * @param out receives the tiles ready to be drawn
+     */
+    public synchronized void getReadyTiles(List<Tile<T>> out) {
+        out.clear();
+        for (int i = 0; i < mTiles.size(); i++) {
+            Tile<T> tile = mTiles.get(i);
+            if (tile.state == Tile.STATE_READY) out.add(tile);
+        }
+    }
+
+    /**
+     * @return number of tiles currently holding a decoded region
+     */
+    public synchronized int getResidentTileCount() {
+        int count = 0;
+        for (int i = 0; i < mTiles.size(); i++) {
+            if (mTiles.get(i).state == Tile.STATE_READY) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Release every decoded tile, e.g. on memory pressure, the base layer is kept.
+     * The next {@link #update(float, float, float, float, float, List)} requests the visible tiles again.
+     */
+    public void trimMemory() {
+        synchronized (this) {
+            if (mRecycled) return;
+            evict(-1, 0, 0, 0, 0);
+        }
+        releaseEvicted();
+    }
+
+    /**
+     * Release every decoded region and the decoder
+     */
+    public void recycle() {
+        T base;
+        synchronized (this) {
+            if (mRecycled) return;
+            mRecycled = true;
+            evict(-1, 0, 0, 0, 0);
+            base = mBase;
+            mBase = null;
+        }
+        releaseEvicted();
+        if (base != null) mDecoder.releaseRegion(base);
+        mDecoder.recycle();
+    }
+
+    /**
+     * Drop every tile not matching the given sample size and tile range.
+     * Pass a negative sample size to drop all of them.
+     */
+    private void evict(int sampleSize, int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        final int span = sampleSize > 0 ? mGrid.getTileSpan(sampleSize) : 1;
+        for (int i = mTiles.size() - 1; i >= 0; i--) {
+            Tile<T> tile = mTiles.get(i);
+            int column = tile.left / span;
+            int row = tile.top / span;
+            if (tile.sampleSize != sampleSize
+                    || column < firstColumn || column > lastColumn
+                    || row < firstRow || row > lastRow) {
+                mTiles.remove(i);
+                tile.state = Tile.STATE_EVICTED;
+                mReleased.add(tile);
+            }
+        }
+    }
+
+    private Tile<T> findTile(long key) {
+        for (int i = 0; i < mTiles.size(); i++) {
+            Tile<T> tile = mTiles.get(i);
+            if (tile.key == key) return tile;
+        }
+        return null;
+    }
+
+    private void releaseEvicted() {
+        while (true) {
+            T region;
+            synchronized (this) {
+                if (mReleased.isEmpty()) return;
+                Tile<T> tile = mReleased.remove(mReleased.size() - 1);
+                region = tile.region;
+                tile.region = null;
+            }
+            if (region != null) mDecoder.releaseRegion(region);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.baiwang.imagezoom.utils;
+
+/**
+ * Logging of the call sites run at every gesture event: scale lookups, pinch steps,
+ * translations and matrix dumps. Android free, so the guard and the message building
+ * can be measured on the JVM, see the LoggingBenchmark of the benchmark module.<br />
+ * The call sites are still guarded with {@link ZoomLog#ENABLED} as well, which strips them
+ * from released builds: the guard of this class is what a debug build pays.
+ */
+public final class GestureLog {
+
+	/**
+	 * Same values as the {@link android.util.Log} priorities
+	 */
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+
+	/**
+	 * Destination of the messages, see {@link ZoomLog#PRINTER}
+	 */
+	public interface Printer {
+
+		void println( int priority, String tag, String msg );
+	}
+
+	private final String mTag;
+	private final boolean mEnabled;
+	private final Printer mPrinter;
+
+	/**
+	 * @param tag     the log tag
+	 * @param enabled false to build and print nothing
+	 * @param printer receives the messages
+	 */
+	public GestureLog( String tag, boolean enabled, Printer printer ) {
+		mTag = tag;
+		mEnabled = enabled;
+		mPrinter = printer;
+	}
+
+	public boolean isEnabled() {
+		return mEnabled;
+	}
+
+	public void scale( float scale ) {
+		if ( mEnabled ) mPrinter.println( VERBOSE, mTag, String.valueOf( scale ) );
+	}
+
+	public void targetScale( float scale ) {
+		if ( mEnabled ) mPrinter.println( INFO, mTag, "targetScale " + scale );
+	}
+
+	public void postScale( float scale, float centerX, float centerY ) {
+		if ( mEnabled ) mPrinter.println( INFO, mTag, "postScale: " + scale + ", center: " + centerX + "x" + centerY );
+	}
+
+	public void postTranslate( float deltaX, float deltaY ) {
+		if ( mEnabled ) mPrinter.println( INFO, mTag, "postTranslate: " + deltaX + "x" + deltaY );
+	}
+
+	public void center() {
+		if ( mEnabled ) mPrinter.println( INFO, mTag, "center" );
+	}
+
+	public void matrix( float tx, float ty, float scaleX, float scaleY ) {
+		if ( mEnabled ) {
+			mPrinter.println( DEBUG, mTag, "matrix: { x: " + tx + ", y: " + ty + ", scalex: " + scaleX + ", scaley: " + scaleY + " }" );
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.baiwang.imagezoom.utils;
+
+import android.util.Log;
+
+/**
+ * Logging of the library. Guard every call site with {@link #ENABLED}:
+ *
+ * <pre>
+ * if (ZoomLog.ENABLED) {
+ *     ZoomLog.d(TAG, "scale: " + scale);
+ * }
+ * </pre>
+ *
+ * {@link #ENABLED} is a compile time constant, so the guarded block, message building
+ * included, is removed by javac when it is false. The verbose, debug and info methods are
+ * also declared free of side effects in the consumer ProGuard rules, which strips them from
+ * minified apps if a call slipped through unguarded. Warnings and errors always go through.<br />
+ * The call sites run at every gesture event build their messages with a {@link GestureLog}.
+ */
+public final class ZoomLog {
+
+	/**
+	 * Set to true to debug the library, must be false in released builds
+	 */
+	public static final boolean ENABLED = false;
+
+	/**
+	 * Writes the {@link GestureLog} messages to the platform log
+	 */
+	public static final GestureLog.Printer PRINTER = new GestureLog.Printer() {
+
+		@Override
+		public void println( int priority, String tag, String msg ) {
+			if ( ENABLED ) Log.println( priority, tag, msg );
+		}
+	};
+
+	private ZoomLog() {
+	}
+
+	public static void v( String tag, String msg ) {
+		if ( ENABLED ) Log.v( tag, msg );
+	}
+
+	public static void d( String tag, String msg ) {
+		if ( ENABLED ) Log.d( tag, msg );
+	}
+
+	public static void i( String tag, String msg ) {
+		if ( ENABLED ) Log.i( tag, msg );
+	}
+
+	public static void w( String tag, String msg ) {
+		Log.w( tag, msg );
+	}
+
+	public static void w( String tag, String msg, Throwable tr ) {
+		Log.w( tag, msg, tr );
+	}
+
+	public static void e( String tag, String msg ) {
+		Log.e( tag, msg );
+	}
+}
@@ -0,0 +1,216 @@
+package com.baiwang.imagezoom;
+
+import com.baiwang.imagezoom.animation.Animation;
+import com.baiwang.imagezoom.animation.AnimationEngine;
+import com.baiwang.imagezoom.animation.FlingPhysics;
+import com.baiwang.imagezoom.easing.Cubic;
+import com.baiwang.imagezoom.easing.Easing;
+import com.baiwang.imagezoom.math.ZoomState;
+import com.baiwang.imagezoom.tiles.IRegionDecoder;
+import com.baiwang.imagezoom.tiles.Tile;
+import com.baiwang.imagezoom.tiles.TileManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The JVM side of the gesture path (zoom state math, animation frames, easing, fling physics
+ * and tile selection) must not allocate per event: at 120Hz any per event garbage shows up
+ * as GC pauses.
+ */
+public class HotPathAllocationTest {
+
+    private static final int EVENTS = 20000;
+    private static final long FRAME_NANOS = 8333333L;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Run the events once to warm up, then again measuring the allocated bytes
+     */
+    private void assertNoAllocation(Runnable events) {
+        events.run();
+
+        long before = allocatedBytes();
+        events.run();
+        long allocated = allocatedBytes() - before;
+
+        // the measurement itself allocates a few bytes, any per event object would be >= 16 bytes each
+        assertTrue("allocated " + allocated + " bytes in " + EVENTS + " events", allocated < EVENTS);
+    }
+
+    private static class FakeScheduler implements AnimationEngine.FrameScheduler {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void postFrame(AnimationEngine engine) {
+        }
+
+        @Override
+        public void cancelFrame(AnimationEngine engine) {
+        }
+    }
+
+    private static class PanAnimation extends Animation {
+        final Easing easing = new Cubic();
+        double position;
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            position = easing.easeOut(currentMs, 0, 500, durationMs);
+        }
+    }
+
+    private static class FlingAnimation extends Animation {
+        final FlingPhysics fling = new FlingPhysics();
+        double lastMs;
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            float dt = (float) ((currentMs - lastMs) / 1000);
+            lastMs = currentMs;
+            if (!fling.step(dt)) finish();
+        }
+    }
+
+    @Test
+    public void gestureEvents_onZoomState_doNotAllocate() {
+        final ZoomState state = new ZoomState();
+        state.setFit(ZoomState.Fit.FIT_TO_SCREEN);
+        state.setContentSize(4000, 3000);
+        state.layout(1080, 1920, true, true, false, false);
+        final float[] delta = new float[2];
+        final float[] rect = new float[4];
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                float factor = 1.02f;
+                for (int i = 0; i < EVENTS; i++) {
+                    switch (i % 3) {
+                        case 0:
+                            // pinch step, see ImageViewTouch.ScaleListener.onScale
+                            final float scale = state.getScale();
+                            if (scale > 6) factor = 0.98f;
+                            else if (scale < 1.5f) factor = 1.02f;
+                            final float target = Math.min(state.getMaxScale(), Math.max(scale * factor, state.getMinScale() - 0.1f));
+                            state.postScale(target / state.getScale(), 400, 700);
+                            state.resetDoubleTap();
+                            state.getCenterDelta(delta);
+                            state.postTranslate(delta[0], delta[1]);
+                            break;
+                        case 1:
+                            // scroll step, back and forth
+                            state.panBy((i & 4) == 0 ? 35 : -35, (i & 8) == 0 ? -20 : 20);
+                            break;
+                        default:
+                            if (i % 300 == 2) {
+                                // double tap
+                                state.zoomTo(state.nextDoubleTapScale(state.getScale(), state.getMaxScale()), 540, 960);
+                                state.getCenterDelta(delta);
+                                state.postTranslate(delta[0], delta[1]);
+                            }
+                            break;
+                    }
+                    // matrix update, see ImageViewTouchBase.setImageMatrix and updateDrawableViewport
+                    state.getContentRect(rect);
+                    state.getDisplayMatrix().mapRadius(1f);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void animationFrames_doNotAllocate() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final AnimationEngine engine = new AnimationEngine(scheduler);
+        final PanAnimation pan = new PanAnimation();
+        final FlingAnimation fling = new FlingAnimation();
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EVENTS; i++) {
+                    if (!pan.isRunning()) engine.start(pan, 200);
+                    if (!fling.isRunning()) {
+                        fling.lastMs = 0;
+                        fling.fling.start(0, (i & 1) == 0 ? 6000 : -6000, -2000, 0);
+                        engine.start(fling, Animation.DURATION_UNBOUNDED);
+                    }
+                    scheduler.now += FRAME_NANOS;
+                    engine.doFrame(scheduler.now);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void tileUpdate_whileScrolling_doesNotAllocate() {
+        final TileManager<int[]> manager = new TileManager<>(new IRegionDecoder<int[]>() {
+            private final int[] mRegion = new int[1];
+
+            @Override
+            public int getWidth() {
+                return 12000;
+            }
+
+            @Override
+            public int getHeight() {
+                return 9000;
+            }
+
+            @Override
+            public int[] decodeRegion(int left, int top, int right, int bottom, int sampleSize) {
+                return mRegion;
+            }
+
+            @Override
+            public void releaseRegion(int[] region) {
+            }
+
+            @Override
+            public void recycle() {
+            }
+        }, 512, 16);
+        final List<Tile<int[]>> missing = new ArrayList<>();
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EVENTS; i++) {
+                    // scroll back and forth inside the same set of tiles, at 1:1
+                    float offset = i % 200;
+                    manager.update(2048 + offset, 2048 + offset, 2048 + 400 + offset, 2048 + 700 + offset, 1f, missing);
+                    for (int j = 0; j < missing.size(); j++) {
+                        manager.decodeTile(missing.get(j));
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package com.baiwang.imagezoom.animation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnimationEngineTest {
+
+    private static final long FRAME = 16666667L;
+
+    private static class FakeScheduler implements AnimationEngine.FrameScheduler {
+        long now;
+        int posted;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void postFrame(AnimationEngine engine) {
+            posted++;
+        }
+
+        @Override
+        public void cancelFrame(AnimationEngine engine) {
+            posted--;
+        }
+
+        /** run the posted frame, if any */
+        boolean frame(AnimationEngine engine) {
+            if (posted == 0) return false;
+            posted--;
+            now += FRAME;
+            engine.doFrame(now);
+            return true;
+        }
+    }
+
+    private static class Recorder extends Animation {
+        int updates;
+        int ends;
+        double lastMs;
+
+        @Override
+        protected void onUpdate(double currentMs, double durationMs) {
+            updates++;
+            lastMs = currentMs;
+        }
+
+        @Override
+        protected void onEnd() {
+            ends++;
+        }
+    }
+
+    @Test
+    public void animations_shareOneFrameCallback() {
+        FakeScheduler scheduler = new FakeScheduler();
+        AnimationEngine engine = new AnimationEngine(scheduler);
+        Recorder a = new Recorder();
+        Recorder b = new Recorder();
+
+        engine.start(a, 100);
+        engine.start(b, 50);
+        assertEquals(1, scheduler.posted);
+
+        int frames = 0;
+        while (scheduler.frame(engine)) {
+            assertTrue(scheduler.posted <= 1);
+            frames++;
+        }
+
+        assertEquals(6, frames);
+        assertEquals(1, a.ends);
+        assertEquals(1, b.ends);
+        assertEquals(100, a.lastMs, 0);
+        assertEquals(50, b.lastMs, 0);
+        assertFalse(engine.isAnimating());
+    }
+
+    @Test
+    public void restart_replacesRunningAnimation() {
+        FakeScheduler scheduler = new FakeScheduler();
+        AnimationEngine engine = new AnimationEngine(scheduler);
+        Recorder a = new Recorder();
+
+        engine.start(a, 100);
+        scheduler.frame(engine);
+        scheduler.frame(engine);
+        engine.start(a, 100);
+        assertEquals(1, scheduler.posted);
+
+        int frames = 0;
+        while (scheduler.frame(engine)) frames++;
+
+        assertEquals(6, frames);
+        assertEquals(1, a.ends);
+    }
+
+    @Test
+    public void cancelAll_stopsWithoutEnding() {
+        FakeScheduler scheduler = new FakeScheduler();
+        AnimationEngine engine = new AnimationEngine(scheduler);
+        Recorder a = new Recorder();
+
+        engine.start(a, 100);
+        scheduler.frame(engine);
+        engine.cancelAll();
+
+        assertEquals(0, scheduler.posted);
+        assertFalse(a.isRunning());
+        assertEquals(0, a.ends);
+    }
+
+    @Test
+    public void frameListener_wrapsEachFrameOnce() {
+        FakeScheduler scheduler = new FakeScheduler();
+        AnimationEngine engine = new AnimationEngine(scheduler);
+        final int[] counts = new int[2];
+        engine.setFrameListener(new AnimationEngine.FrameListener() {
+            @Override
+            public void onBeginFrame(long frameTimeNanos) {
+                counts[0]++;
+            }
+
+            @Override
+            public void onEndFrame() {
+                counts[1]++;
+            }
+        });
+
+        engine.start(new Recorder(), 50);
+        engine.start(new Recorder(), 50);
+        int frames = 0;
+        while (scheduler.frame(engine)) frames++;
+
+        assertEquals(frames, counts[0]);
+        assertEquals(frames, counts[1]);
+    }
+}
@@ -0,0 +1,35 @@
+package com.baiwang.imagezoom.animation;
+
+import com.baiwang.imagezoom.easing.Cubic;
+import com.baiwang.imagezoom.easing.Linear;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnimationSpecTest {
+
+    @Test
+    public void fixedDuration_ignoresDistance() {
+        AnimationSpec spec = new AnimationSpec(new Cubic(), 200);
+        assertEquals(200, spec.getDuration(0), 0);
+        assertEquals(200, spec.getDuration(5000), 0);
+    }
+
+    @Test
+    public void proportionalDuration_isClamped() {
+        AnimationSpec spec = new AnimationSpec(new Cubic(), 100, 400, 0.25f);
+        assertEquals(100, spec.getDuration(0), 0);
+        assertEquals(200, spec.getDuration(400), 0);
+        assertEquals(200, spec.getDuration(-400), 0);
+        assertEquals(400, spec.getDuration(10000), 0);
+    }
+
+    @Test
+    public void withEasing_keepsDurations() {
+        Linear linear = new Linear();
+        AnimationSpec spec = new AnimationSpec(new Cubic(), 100, 400, 0.25f).withEasing(linear);
+        assertSame(linear, spec.getEasing());
+        assertEquals(200, spec.getDuration(400), 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.baiwang.imagezoom.animation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlingPhysicsTest {
+
+    private static final float FRAME = 1 / 60f;
+
+    private static int run(FlingPhysics fling, int maxFrames) {
+        int frames = 0;
+        while (fling.step(FRAME) && frames < maxFrames) frames++;
+        return frames;
+    }
+
+    @Test
+    public void fling_deceleratesAndStops() {
+        FlingPhysics fling = new FlingPhysics();
+        fling.start(0, -2000, -10000, 0);
+
+        fling.step(FRAME);
+        float first = Math.abs(fling.getVelocity());
+        assertTrue(first < 2000);
+
+        int frames = run(fling, 1000);
+        assertTrue(fling.isFinished());
+        assertTrue(frames < 1000);
+        // v / friction, minus the tail below the stop velocity
+        assertEquals(-2000 / FlingPhysics.DEFAULT_FRICTION, fling.getPosition(), 20);
+    }
+
+    @Test
+    public void fling_pastEdge_bouncesBackToEdge() {
+        FlingPhysics fling = new FlingPhysics();
+        fling.start(-100, 5000, -1000, 0);
+
+        float overshoot = 0;
+        while (fling.step(FRAME)) {
+            overshoot = Math.max(overshoot, fling.getPosition());
+        }
+
+        assertTrue(overshoot > 0);
+        assertTrue(overshoot < 500);
+        assertEquals(0, fling.getPosition(), 0);
+    }
+
+    @Test
+    public void fling_withNothingToScroll_doesNotMove() {
+        FlingPhysics fling = new FlingPhysics();
+        fling.start(40, 3000, 40, 40);
+
+        assertFalse(fling.step(FRAME));
+        assertEquals(40, fling.getPosition(), 0);
+    }
+
+    @Test
+    public void fling_onContentSmallerThanView_keepsItCentered() {
+        FlingPhysics fling = new FlingPhysics();
+        // 400px content centered in a 600px view: min = 600 - 400 > max = 0
+        fling.start(100, 3000, 200, 0);
+
+        assertFalse(fling.step(FRAME));
+        assertEquals(100, fling.getPosition(), 0);
+    }
+
+    @Test
+    public void droppedFrame_isIntegratedInStableSteps() {
+        FlingPhysics fling = new FlingPhysics();
+        fling.start(0, 5000, -1000, 0);
+
+        fling.step(0.5f);
+        assertTrue(Math.abs(fling.getPosition()) < 500);
+    }
+}
@@ -0,0 +1,59 @@
+package com.baiwang.imagezoom.easing;
+
+import com.baiwang.imagezoom.easing.TabulatedEasing.Interpolation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the error bounds documented on {@link TabulatedEasing}
+ */
+public class TabulatedEasingTest {
+
+    private static final int SAMPLES = 20000;
+
+    private static double maxError(Easing easing, Interpolation interpolation) {
+        TabulatedEasing table = new TabulatedEasing(easing, TabulatedEasing.DEFAULT_SIZE, interpolation);
+        double error = 0;
+        for (int i = 0; i <= SAMPLES; i++) {
+            double t = 300.0 * i / SAMPLES;
+            error = Math.max(error, Math.abs(easing.easeIn(t, 0, 1, 300) - table.easeIn(t, 0, 1, 300)));
+            error = Math.max(error, Math.abs(easing.easeOut(t, 0, 1, 300) - table.easeOut(t, 0, 1, 300)));
+            error = Math.max(error, Math.abs(easing.easeInOut(t, 0, 1, 300) - table.easeInOut(t, 0, 1, 300)));
+        }
+        return error;
+    }
+
+    private static void assertBounds(Easing easing, double linear, double cubic) {
+        String name = easing.getClass().getSimpleName();
+        assertTrue(name + " linear", maxError(easing, Interpolation.LINEAR) < linear);
+        assertTrue(name + " cubic", maxError(easing, Interpolation.CUBIC) < cubic);
+    }
+
+    @Test
+    public void smoothCurves() {
+        for (Easing easing : new Easing[]{new Back(), new Cubic(), new Quad(), new Quart(), new Quint(), new Sine()}) {
+            assertBounds(easing, 1e-4, 5e-5);
+        }
+        assertBounds(new Linear(), 1e-6, 1e-6);
+    }
+
+    @Test
+    public void curvesWithDiscontinuities() {
+        assertBounds(new Expo(), 1e-3, 1e-3);
+        assertBounds(new Elastic(), 1e-3, 1e-3);
+        assertBounds(new Bounce(), 8e-3, 6e-3);
+        assertBounds(new Circ(), 2.5e-2, 2.5e-2);
+    }
+
+    @Test
+    public void scalesAndClamps() {
+        TabulatedEasing easing = new TabulatedEasing(new Cubic());
+        assertEquals(new Cubic().easeOut(120, 0, -800, 200), easing.easeOut(120, 0, -800, 200), 0.05);
+        assertEquals(10, easing.easeOut(0, 10, 500, 200), 0);
+        assertEquals(510, easing.easeOut(200, 10, 500, 200), 0);
+        assertEquals(510, easing.easeOut(250, 10, 500, 200), 0);
+        assertEquals(510, easing.easeInOut(0, 10, 500, 0), 0);
+    }
+}
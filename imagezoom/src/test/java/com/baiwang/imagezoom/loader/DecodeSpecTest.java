@@ -0,0 +1,44 @@
+package com.baiwang.imagezoom.loader;
+
+import com.baiwang.imagezoom.math.ZoomState.Fit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeSpecTest {
+
+    @Test
+    public void cameraJpeg_isSubsampledForPhoneView() {
+        // 20MP, 5472x3648, in a 1080x1920 portrait view, sharp up to 2x
+        DecodeSpec spec = new DecodeSpec(1080, 1920, Fit.FIT_TO_SCREEN, -1f, 2f);
+        float scale = spec.getDecodeScale(5472, 3648);
+        int sampleSize = spec.getSampleSize(5472, 3648);
+
+        assertEquals(2, sampleSize);
+        // still at least one decoded pixel per screen pixel at the max decode zoom
+        assertTrue(5472f / sampleSize >= 1080 * 2f);
+        assertTrue(scale * sampleSize <= 1f);
+    }
+
+    @Test
+    public void smallImage_isNeverSubsampled() {
+        DecodeSpec spec = new DecodeSpec(1080, 1920, Fit.FIT_TO_SCREEN, -1f, 2f);
+        assertEquals(1, spec.getSampleSize(800, 600));
+        assertEquals(1f, spec.getDecodeScale(800, 600), 0f);
+    }
+
+    @Test
+    public void displayTypeNone_needsFullResolution() {
+        DecodeSpec spec = new DecodeSpec(1080, 1920, Fit.NONE, -1f, 2f);
+        assertEquals(1, spec.getSampleSize(5472, 3648));
+    }
+
+    @Test
+    public void densityScale_onlyWhenWorthIt() {
+        assertEquals(1f, SampleSizeCalculator.computeDensityScale(0.45f, 2), 0f);
+        assertEquals(0.6f, SampleSizeCalculator.computeDensityScale(0.3f, 2), 1e-6f);
+        assertEquals(4, SampleSizeCalculator.computeSampleSize(0.2f));
+        assertEquals(1, SampleSizeCalculator.computeSampleSize(1.5f));
+    }
+}
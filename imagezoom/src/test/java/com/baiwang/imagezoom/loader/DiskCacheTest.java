@@ -0,0 +1,115 @@
+package com.baiwang.imagezoom.loader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class DiskCacheTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("diskcache", "");
+        assertTrue(mDirectory.delete());
+        assertTrue(mDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(mDirectory.delete());
+    }
+
+    private static DiskCache.Writer bytes(final int count) {
+        return new DiskCache.Writer() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                for (int i = 0; i < count; i++) os.write(i);
+            }
+        };
+    }
+
+    private static int length(DiskCache.Snapshot snapshot) throws IOException {
+        InputStream is = snapshot.openStream();
+        try {
+            int count = 0;
+            while (is.read() != -1) count++;
+            return count;
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void entries_surviveReopen() throws IOException {
+        DiskCache cache = DiskCache.open(mDirectory, 1024);
+        assertTrue(cache.put("file:/a.jpg|1080x1920", "4000,3000,2", bytes(100)));
+        cache.close();
+
+        cache = DiskCache.open(mDirectory, 1024);
+        DiskCache.Snapshot snapshot = cache.get("file:/a.jpg|1080x1920");
+        assertNotNull(snapshot);
+        assertEquals("4000,3000,2", snapshot.getMetadata());
+        assertEquals(100, length(snapshot));
+        assertEquals(100, cache.getSize());
+        cache.close();
+    }
+
+    @Test
+    public void interruptedWrite_isDiscarded() throws IOException {
+        DiskCache cache = DiskCache.open(mDirectory, 1024);
+        assertTrue(cache.put("a", "", bytes(10)));
+        cache.close();
+
+        // simulate a crash while writing "b": DIRTY is journaled, CLEAN never is
+        String hash = DiskCache.hashKey("b");
+        FileWriter journal = new FileWriter(new File(mDirectory, DiskCache.JOURNAL_FILE), true);
+        journal.write("DIRTY " + hash + "\nCLEAN " + DiskCache.hashKey("a") + " 1");
+        journal.close();
+        FileWriter partial = new FileWriter(new File(mDirectory, hash + ".tmp"));
+        partial.write("partial");
+        partial.close();
+
+        cache = DiskCache.open(mDirectory, 1024);
+        assertNull(cache.get("b"));
+        assertFalse(new File(mDirectory, hash + ".tmp").exists());
+        // the truncated CLEAN line was ignored
+        assertNotNull(cache.get("a"));
+        assertEquals(10, cache.getSize());
+        cache.close();
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() throws IOException {
+        DiskCache cache = DiskCache.open(mDirectory, 250);
+        cache.put("a", "", bytes(100));
+        cache.put("b", "", bytes(100));
+        assertNotNull(cache.get("a"));
+        cache.put("c", "", bytes(100));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(200, cache.getSize());
+        cache.close();
+
+        cache = DiskCache.open(mDirectory, 250);
+        assertNull(cache.get("b"));
+        assertEquals(200, cache.getSize());
+        cache.close();
+    }
+}
@@ -0,0 +1,25 @@
+package com.baiwang.imagezoom.loader;
+
+import org.junit.Test;
+
+import static android.content.ComponentCallbacks2.*;
+import static org.junit.Assert.*;
+
+public class ImageLoaderTest {
+
+    @Test
+    public void trimRatio_shrinksWithTheLevel() {
+        assertEquals(1f, ImageLoader.getTrimRatio(TRIM_MEMORY_RUNNING_MODERATE), 0);
+        assertEquals(0.5f, ImageLoader.getTrimRatio(TRIM_MEMORY_RUNNING_LOW), 0);
+        // the foreground app keeps only what is on screen
+        assertEquals(0f, ImageLoader.getTrimRatio(TRIM_MEMORY_RUNNING_CRITICAL), 0);
+
+        float previous = 1f;
+        for (int level : new int[]{TRIM_MEMORY_UI_HIDDEN, TRIM_MEMORY_BACKGROUND, TRIM_MEMORY_MODERATE, TRIM_MEMORY_COMPLETE}) {
+            float ratio = ImageLoader.getTrimRatio(level);
+            assertTrue(ratio < previous || ratio == 0f);
+            previous = ratio;
+        }
+        assertEquals(0f, ImageLoader.getTrimRatio(TRIM_MEMORY_COMPLETE), 0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.baiwang.imagezoom.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the operations follow the android.graphics.Matrix conventions
+ */
+public class AffineTest {
+
+    private static float[] map(Affine affine, float x, float y) {
+        float[] point = {x, y, x, y};
+        affine.mapRect(point);
+        return new float[]{point[0], point[1]};
+    }
+
+    private static void assertMaps(Affine affine, float x, float y, float expectedX, float expectedY) {
+        float[] point = map(affine, x, y);
+        assertEquals(expectedX, point[0], 1e-4f);
+        assertEquals(expectedY, point[1], 1e-4f);
+    }
+
+    @Test
+    public void postScale_keepsPivot() {
+        Affine affine = new Affine();
+        affine.postScale(2, 2, 100, 50);
+        assertMaps(affine, 100, 50, 100, 50);
+        assertMaps(affine, 0, 0, -100, -50);
+        assertEquals(2, affine.getScaleX(), 0);
+    }
+
+    @Test
+    public void preScale_appliesBeforeTranslation() {
+        Affine pre = new Affine();
+        pre.postTranslate(10, 0);
+        pre.preScale(2, 2);
+        assertMaps(pre, 1, 0, 12, 0);
+
+        Affine post = new Affine();
+        post.postTranslate(10, 0);
+        post.postScale(2, 2);
+        assertMaps(post, 1, 0, 22, 0);
+    }
+
+    @Test
+    public void postRotate_quarterTurnIsExact() {
+        Affine affine = new Affine();
+        affine.postRotate(90, 0, 0);
+        assertEquals(0, affine.getScaleX(), 0);
+        assertEquals(-1, affine.getSkewX(), 0);
+        assertEquals(1, affine.getSkewY(), 0);
+
+        float[] rect = {0, 0, 100, 50};
+        affine.mapRect(rect);
+        assertArrayEquals(new float[]{-50, 0, 0, 100}, rect, 0);
+    }
+
+    @Test
+    public void mapRadius_isTheMeanScale() {
+        Affine affine = new Affine();
+        affine.postScale(2, 8);
+        affine.postTranslate(30, -7);
+        assertEquals(4, affine.mapRadius(1), 1e-6f);
+
+        affine.postRotate(30, 5, 5);
+        assertEquals(8, affine.mapRadius(2), 1e-5f);
+    }
+
+    @Test
+    public void postConcat_appliesOtherAfter() {
+        Affine base = new Affine();
+        base.postScale(0.5f, 0.5f);
+        base.postTranslate(10, 20);
+        Affine supp = new Affine();
+        supp.postScale(2, 2, 50, 50);
+
+        Affine display = new Affine(base);
+        display.postConcat(supp);
+        assertMaps(display, 100, 100, 70, 90);
+    }
+
+    @Test
+    public void values_roundTrip() {
+        Affine affine = new Affine();
+        affine.postRotate(30, 5, 7);
+        affine.postScale(3, 2);
+        affine.postTranslate(-4, 9);
+
+        float[] values = new float[9];
+        affine.getValues(values);
+        assertEquals(1, values[Affine.MPERSP_2], 0);
+
+        Affine copy = new Affine();
+        copy.setValues(values);
+        assertEquals(affine, copy);
+        assertFalse(copy.isIdentity());
+        copy.reset();
+        assertTrue(copy.isIdentity());
+    }
+}
@@ -0,0 +1,60 @@
+package com.baiwang.imagezoom.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZoomMathTest {
+
+    private final float[] mOut = new float[2];
+
+    @Test
+    public void getCenter_smallImage_isCentered() {
+        ZoomMath.getCenter(0, 0, 540, 960, 1080, 1920, mOut);
+        assertEquals(270, mOut[0], 0);
+        assertEquals(480, mOut[1], 0);
+    }
+
+    @Test
+    public void getCenter_largeImage_edgesArePulledBack() {
+        // scrolled 100px too far to the left, top edge 50px inside the view
+        ZoomMath.getCenter(-2260, 50, -100, 3890, 1080, 1920, mOut);
+        assertEquals(1180, mOut[0], 0);
+        assertEquals(-50, mOut[1], 0);
+    }
+
+    @Test
+    public void clampScroll_stopsAtEdges() {
+        mOut[0] = 500;
+        mOut[1] = -5000;
+        ZoomMath.clampScroll(-200, -300, 2000, 2500, 1080, 1920, mOut);
+        assertEquals(200, mOut[0], 0);
+        assertEquals(-580, mOut[1], 0);
+    }
+
+    @Test
+    public void clampScroll_fittingImage_doesNotScroll() {
+        mOut[0] = 40;
+        mOut[1] = 40;
+        ZoomMath.clampScroll(0, 656, 1080, 1264, 1080, 1920, mOut);
+        assertEquals(0, mOut[0], 0);
+        assertEquals(0, mOut[1], 0);
+    }
+
+    @Test
+    public void computeZoomLimits() {
+        assertEquals(4000f / 1080 * ZoomMath.MAX_ZOOM_FACTOR, ZoomMath.computeMaxZoom(4000, 3000, 1080, 1920), 1e-4);
+        assertEquals(1f, ZoomMath.computeMinZoom(0.27f), 0);
+        assertEquals(0.5f, ZoomMath.computeMinZoom(2f), 0);
+    }
+
+    @Test
+    public void computeMipLevel_neverBelowScreenSize() {
+        assertEquals(0, ZoomMath.computeMipLevel(1f, 5));
+        assertEquals(0, ZoomMath.computeMipLevel(0.6f, 5));
+        assertEquals(1, ZoomMath.computeMipLevel(0.5f, 5));
+        assertEquals(2, ZoomMath.computeMipLevel(0.18f, 5));
+        assertEquals(3, ZoomMath.computeMipLevel(0.01f, 3));
+        assertEquals(0, ZoomMath.computeMipLevel(0f, 3));
+    }
+}
@@ -0,0 +1,113 @@
+package com.baiwang.imagezoom.math;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ZoomStateTest {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    private final ZoomState mState = new ZoomState();
+    private final float[] mRect = new float[4];
+
+    @Before
+    public void setUp() {
+        mState.setFit(ZoomState.Fit.FIT_TO_SCREEN);
+        mState.setContentSize(4000, 3000);
+        mState.layout(VIEW_WIDTH, VIEW_HEIGHT, true, true, false, false);
+    }
+
+    @Test
+    public void layout_fitsAndCentersContent() {
+        assertEquals(1f, mState.getScale(), 0);
+        assertEquals(VIEW_WIDTH / 4000f, mState.getBaseScale(), 1e-6);
+        assertTrue(mState.getContentRect(mRect));
+        assertEquals(0, mRect[0], 1e-3);
+        assertEquals(VIEW_WIDTH, mRect[2], 1e-3);
+        assertEquals(VIEW_HEIGHT / 2f, (mRect[1] + mRect[3]) / 2, 1e-3);
+    }
+
+    @Test
+    public void layout_sizeChange_keepsUserZoom() {
+        mState.zoomTo(4f, VIEW_WIDTH / 2f, VIEW_HEIGHT / 2f);
+        // rotated to landscape: the base scale shrinks, the content keeps its size on screen
+        mState.layout(VIEW_HEIGHT, VIEW_WIDTH, true, false, false, true);
+        final float contentWidth = 4000 * mState.getBaseScale() * mState.getScale();
+        assertEquals(VIEW_WIDTH * 4f, contentWidth, 1e-1);
+    }
+
+    @Test
+    public void restoreFocus_rebuildsZoomAndPanInANewState() {
+        mState.zoomTo(6f, 200, 300);
+        mState.panBy(-150, 80);
+        final float[] focus = new float[2];
+        assertTrue(mState.getFocus(focus));
+        final float relativeScale = mState.getScale() / mState.getMinScale();
+
+        // recreated view, same size: the same display
+        ZoomState restored = new ZoomState();
+        restored.setFit(ZoomState.Fit.FIT_TO_SCREEN);
+        restored.setContentSize(4000, 3000);
+        restored.layout(VIEW_WIDTH, VIEW_HEIGHT, true, true, false, false);
+        restored.restoreFocus(relativeScale, focus[0], focus[1]);
+        assertEquals(mState.getSupportMatrix().getScaleX(), restored.getSupportMatrix().getScaleX(), 1e-4);
+        assertEquals(mState.getSupportMatrix().getTranslateX(), restored.getSupportMatrix().getTranslateX(), 1e-1);
+        assertEquals(mState.getSupportMatrix().getTranslateY(), restored.getSupportMatrix().getTranslateY(), 1e-1);
+
+        // rotated: same relative zoom, same point at the center
+        restored.layout(VIEW_HEIGHT, VIEW_WIDTH, true, true, false, false);
+        restored.restoreFocus(relativeScale, focus[0], focus[1]);
+        final float[] restoredFocus = new float[2];
+        assertTrue(restored.getFocus(restoredFocus));
+        assertEquals(relativeScale, restored.getScale() / restored.getMinScale(), 1e-4);
+        assertEquals(focus[0], restoredFocus[0], 1e-3);
+        assertEquals(focus[1], restoredFocus[1], 1e-3);
+    }
+
+    @Test
+    public void doubleTap_cyclesUpToMaxThenBack() {
+        mState.setDoubleTapStep(1f);
+        assertEquals(2f, mState.nextDoubleTapScale(1f, 4f), 0);
+        assertEquals(3f, mState.nextDoubleTapScale(2f, 4f), 0);
+        assertEquals(4f, mState.nextDoubleTapScale(3f, 4f), 0);
+        assertEquals(1f, mState.nextDoubleTapScale(4f, 4f), 0);
+        assertEquals(2f, mState.nextDoubleTapScale(1f, 4f), 0);
+
+        mState.setDoubleTapDirection(-1);
+        assertEquals(1f, mState.nextDoubleTapScale(2f, 4f), 0);
+        assertEquals(1, mState.getDoubleTapDirection());
+    }
+
+    @Test
+    public void simulatedGestures_contentNeverLeavesItsBounds() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(4) == 0) {
+                float scale = 1 + random.nextFloat() * 7;
+                mState.zoomTo(scale, random.nextFloat() * VIEW_WIDTH, random.nextFloat() * VIEW_HEIGHT);
+            } else {
+                mState.panBy((random.nextFloat() - 0.5f) * 400, (random.nextFloat() - 0.5f) * 400);
+            }
+
+            mState.getContentRect(mRect);
+            final float width = mRect[2] - mRect[0];
+            final float height = mRect[3] - mRect[1];
+            if (width >= VIEW_WIDTH) {
+                // no gap at either edge
+                assertTrue(mRect[0] <= 1e-2 && mRect[2] >= VIEW_WIDTH - 1e-2);
+            } else {
+                assertEquals(VIEW_WIDTH / 2f, (mRect[0] + mRect[2]) / 2, 1e-2);
+            }
+            if (height >= VIEW_HEIGHT) {
+                assertTrue(mRect[1] <= 1e-2 && mRect[3] >= VIEW_HEIGHT - 1e-2);
+            } else {
+                assertEquals(VIEW_HEIGHT / 2f, (mRect[1] + mRect[3]) / 2, 1e-2);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.baiwang.imagezoom.metrics;
+
+import com.baiwang.imagezoom.loader.ImageLoader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ViewMetricsTest {
+
+    private static final long FRAME = 16666667;
+
+    @Test
+    public void countDroppedFrames_toleratesJitter() {
+        assertEquals(0, ViewMetrics.countDroppedFrames(0, FRAME));
+        assertEquals(0, ViewMetrics.countDroppedFrames(FRAME + FRAME / 3, FRAME));
+        assertEquals(1, ViewMetrics.countDroppedFrames(2 * FRAME - FRAME / 3, FRAME));
+        assertEquals(3, ViewMetrics.countDroppedFrames(4 * FRAME, FRAME));
+    }
+
+    @Test
+    public void stat_recordsCountMeanAndMax() {
+        ViewMetrics.Stat stat = new ViewMetrics.Stat();
+        stat.record(10);
+        stat.record(30);
+        stat.record(20);
+        assertEquals(3, stat.getCount());
+        assertEquals(20, stat.getMeanNanos());
+        assertEquals(30, stat.getMaxNanos());
+        stat.reset();
+        assertEquals(0, stat.getMeanNanos());
+    }
+
+    @Test
+    public void cacheHitRate() {
+        ViewMetrics metrics = new ViewMetrics();
+        assertEquals(0, metrics.getCacheHitRate(), 0);
+        metrics.recordImageLoaded(ImageLoader.LoadedFrom.MEMORY_CACHE, 0);
+        metrics.recordImageLoaded(ImageLoader.LoadedFrom.DISK_CACHE, 5000000);
+        metrics.recordImageLoaded(ImageLoader.LoadedFrom.SOURCE, 40000000);
+        metrics.recordImageLoaded(ImageLoader.LoadedFrom.SOURCE, 60000000);
+        assertEquals(0.5f, metrics.getCacheHitRate(), 0);
+        // memory hits are not decodes
+        assertEquals(3, metrics.getDecodeStat().getCount());
+        assertEquals(60000000, metrics.getDecodeStat().getMaxNanos());
+    }
+}
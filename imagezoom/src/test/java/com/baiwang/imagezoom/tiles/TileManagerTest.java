@@ -0,0 +1,182 @@
+package com.baiwang.imagezoom.tiles;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tile selection and memory bounds, using a plain JVM stand-in for the region decoder.
+ */
+public class TileManagerTest {
+
+    private static final int IMAGE_WIDTH = 12000;
+    private static final int IMAGE_HEIGHT = 9000;
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    /**
+     * Decodes regions into int arrays sized like the real subsampled bitmap,
+     * keeping track of the live pixel count.
+     */
+    static class FakeRegionDecoder implements IRegionDecoder<int[]> {
+        long livePixels;
+        long maxLivePixels;
+        int decodeCount;
+        boolean recycled;
+
+        @Override
+        public int getWidth() {
+            return IMAGE_WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return IMAGE_HEIGHT;
+        }
+
+        @Override
+        public int[] decodeRegion(int left, int top, int right, int bottom, int sampleSize) {
+            assertFalse(recycled);
+            int width = (right - left + sampleSize - 1) / sampleSize;
+            int height = (bottom - top + sampleSize - 1) / sampleSize;
+            decodeCount++;
+            livePixels += (long) width * height;
+            maxLivePixels = Math.max(maxLivePixels, livePixels);
+            return new int[width * height];
+        }
+
+        @Override
+        public void releaseRegion(int[] region) {
+            livePixels -= region.length;
+        }
+
+        @Override
+        public void recycle() {
+            recycled = true;
+        }
+    }
+
+    @Test
+    public void sampleSize_isLargestPowerOfTwoNotBelowScreenResolution() {
+        assertEquals(1, TileGrid.computeSampleSize(1f));
+        assertEquals(1, TileGrid.computeSampleSize(0.6f));
+        assertEquals(2, TileGrid.computeSampleSize(0.5f));
+        assertEquals(4, TileGrid.computeSampleSize(0.09f * 2));
+        assertEquals(1, TileGrid.computeSampleSize(8f));
+        assertEquals(1, TileGrid.computeSampleSize(0f));
+    }
+
+    @Test
+    public void fitToScreen_usesBaseLayerOnly() {
+        FakeRegionDecoder decoder = new FakeRegionDecoder();
+        float fitScale = (float) VIEW_WIDTH / IMAGE_WIDTH;
+        TileManager<int[]> manager = new TileManager<>(decoder, 512, TileGrid.computeSampleSize(fitScale));
+        assertTrue(manager.decodeBase());
+
+        List<Tile<int[]>> missing = new ArrayList<>();
+        manager.update(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT, fitScale, missing);
+
+        assertTrue(missing.isEmpty());
+        assertEquals(1, decoder.decodeCount);
+    }
+
+    @Test
+    public void deepZoom_decodesOnlyVisibleTilesAtFullResolution() {
+        FakeRegionDecoder decoder = new FakeRegionDecoder();
+        TileManager<int[]> manager = new TileManager<>(decoder, 512, 16);
+
+        List<Tile<int[]>> missing = new ArrayList<>();
+        // 2x zoom past 1:1, viewport centered on the image
+        float scale = 2f;
+        float left = IMAGE_WIDTH / 2f - VIEW_WIDTH / scale / 2f;
+        float top = IMAGE_HEIGHT / 2f - VIEW_HEIGHT / scale / 2f;
+        int sampleSize = manager.update(left, top, left + VIEW_WIDTH / scale, top + VIEW_HEIGHT / scale, scale, missing);
+
+        assertEquals(1, sampleSize);
+        assertFalse(missing.isEmpty());
+        for (Tile<int[]> tile : missing) {
+            assertEquals(1, tile.getSampleSize());
+            assertTrue(manager.decodeTile(tile));
+        }
+        assertTrue(missing.size() <= 3 * 3);
+
+        // a second update with the same viewport has nothing left to decode
+        manager.update(left, top, left + VIEW_WIDTH / scale, top + VIEW_HEIGHT / scale, scale, missing);
+        assertTrue(missing.isEmpty());
+    }
+
+    @Test
+    public void panningAcrossTheImage_keepsMemoryBounded() {
+        FakeRegionDecoder decoder = new FakeRegionDecoder();
+        final int tileSize = 512;
+        TileManager<int[]> manager = new TileManager<>(decoder, tileSize, 16);
+        assertTrue(manager.decodeBase());
+
+        List<Tile<int[]>> missing = new ArrayList<>();
+        float[] scales = {0.1f, 0.3f, 0.7f, 1f, 4f};
+        for (float scale : scales) {
+            float width = VIEW_WIDTH / scale;
+            float height = VIEW_HEIGHT / scale;
+            for (float x = 0; x + width <= IMAGE_WIDTH; x += width / 3) {
+                for (float y = 0; y + height <= IMAGE_HEIGHT; y += height / 3) {
+                    manager.update(x, y, x + width, y + height, scale, missing);
+                    for (Tile<int[]> tile : missing) {
+                        manager.decodeTile(tile);
+                    }
+                }
+            }
+        }
+
+        long baseSize = (long) ((IMAGE_WIDTH + 15) / 16) * ((IMAGE_HEIGHT + 15) / 16);
+        long maxTiles = (2L * VIEW_WIDTH / tileSize + 2) * (2L * VIEW_HEIGHT / tileSize + 2);
+        assertTrue(decoder.maxLivePixels <= baseSize + maxTiles * tileSize * tileSize);
+        assertTrue(decoder.maxLivePixels < (long) IMAGE_WIDTH * IMAGE_HEIGHT / 8);
+
+        manager.recycle();
+        assertEquals(0, decoder.livePixels);
+        assertTrue(decoder.recycled);
+    }
+
+    @Test
+    public void trimMemory_releasesTilesUntilNextUpdate() {
+        FakeRegionDecoder decoder = new FakeRegionDecoder();
+        TileManager<int[]> manager = new TileManager<>(decoder, 512, 16);
+        assertTrue(manager.decodeBase());
+        final long basePixels = decoder.livePixels;
+
+        List<Tile<int[]>> missing = new ArrayList<>();
+        manager.update(0, 0, 500, 500, 2f, missing);
+        for (Tile<int[]> tile : missing) {
+            assertTrue(manager.decodeTile(tile));
+        }
+        final int visibleTiles = missing.size();
+
+        manager.trimMemory();
+        assertEquals(0, manager.getResidentTileCount());
+        assertEquals(basePixels, decoder.livePixels);
+        assertNotNull(manager.getBase());
+
+        manager.update(0, 0, 500, 500, 2f, missing);
+        assertEquals(visibleTiles, missing.size());
+    }
+
+    @Test
+    public void evictedTile_isDroppedAfterDecode() {
+        FakeRegionDecoder decoder = new FakeRegionDecoder();
+        TileManager<int[]> manager = new TileManager<>(decoder, 512, 16);
+
+        List<Tile<int[]>> missing = new ArrayList<>();
+        manager.update(0, 0, 500, 500, 2f, missing);
+        List<Tile<int[]>> stale = new ArrayList<>(missing);
+
+        // move far away before the decode completes
+        manager.update(10000, 8000, 10500, 8500, 2f, missing);
+        for (Tile<int[]> tile : stale) {
+            assertFalse(manager.decodeTile(tile));
+        }
+        assertEquals(0, decoder.livePixels);
+    }
+}